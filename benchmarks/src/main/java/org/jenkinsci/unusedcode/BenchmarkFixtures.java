@@ -0,0 +1,159 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generated classes, jars, wars and jelly files for the benchmarks. They depend only on the
+ * parameters and on a fixed seed, so that all the runs measure the same input.
+ */
+final class BenchmarkFixtures {
+    private static final long SEED = 42;
+    private static final String PACKAGE = "bench/api/";
+
+    private BenchmarkFixtures() {
+        super();
+    }
+
+    static String getClassName(int index) {
+        return PACKAGE + "Class" + index;
+    }
+
+    static String getMethodName(int index) {
+        return "method" + index;
+    }
+
+    /**
+     * @return a class which extends the previous class in chains of hierarchyDepth classes, with
+     *         methodCount methods each calling callCount methods of other classes
+     */
+    static byte[] generateClass(int index, int classCount, int hierarchyDepth, int methodCount,
+            int callCount) {
+        final Random random = new Random(SEED + index);
+        final String superName = index % hierarchyDepth == 0 ? "java/util/AbstractList"
+                : getClassName(index - 1);
+        final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, getClassName(index), null, superName,
+                new String[] { "java/io/Serializable" });
+        final MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        for (int i = 0; i < methodCount; i++) {
+            final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC,
+                    getMethodName(i), "(Ljava/lang/String;)I", null, null);
+            method.visitCode();
+            for (int j = 0; j < callCount; j++) {
+                method.visitTypeInsn(Opcodes.NEW, getClassName(random.nextInt(classCount)));
+                method.visitInsn(Opcodes.POP);
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                        getClassName(random.nextInt(classCount)),
+                        getMethodName(random.nextInt(methodCount)), "(Ljava/lang/String;)I",
+                        false);
+                method.visitInsn(Opcodes.POP);
+            }
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/util/AbstractList", "size",
+                    "()I", false);
+            method.visitInsn(Opcodes.IRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        final MethodVisitor get = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "get",
+                "(I)Ljava/lang/Object;", null, null);
+        get.visitCode();
+        get.visitInsn(Opcodes.ACONST_NULL);
+        get.visitInsn(Opcodes.ARETURN);
+        get.visitMaxs(0, 0);
+        get.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * @return a jelly file of about size chars, which uses methods of the generated classes
+     */
+    static byte[] generateJelly(int index, int size, int methodCount) {
+        final Random random = new Random(SEED + index);
+        final StringBuilder sb = new StringBuilder(size + 200);
+        sb.append("<?jelly escape-by-default='true'?>\n");
+        sb.append("<j:jelly xmlns:j=\"jelly:core\" xmlns:l=\"/lib/layout\">\n");
+        while (sb.length() < size) {
+            sb.append("  <l:task href=\"${rootURL}/item_").append(random.nextInt(1000))
+                    .append("\" title=\"${it.").append(getMethodName(random.nextInt(methodCount)))
+                    .append("(app.displayName)}\"/>\n");
+            sb.append("  <j:if test=\"${h.hasPermission(it, it.CONFIGURE) and it.buildable}\">")
+                    .append("Élément configuré &amp; prêt</j:if>\n");
+        }
+        sb.append("</j:jelly>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] generateJar(int classCount, int hierarchyDepth, int methodCount, int callCount)
+            throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ZipOutputStream zip = new ZipOutputStream(output);
+        try {
+            for (int i = 0; i < classCount; i++) {
+                zip.putNextEntry(new ZipEntry(getClassName(i) + ".class"));
+                zip.write(generateClass(i, classCount, hierarchyDepth, methodCount, callCount));
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes a war with a jenkins-core jar of the generated classes, stored or deflated, and with
+     * jelly files.
+     */
+    static File generateWar(int classCount, int jellyCount, boolean storedJar) throws IOException {
+        final File file = File.createTempFile("unusedcode-benchmark-", ".war");
+        file.deleteOnExit();
+        final byte[] jar = generateJar(classCount, 4, 10, 3);
+        final OutputStream output = new FileOutputStream(file);
+        final ZipOutputStream zip = new ZipOutputStream(output);
+        try {
+            final ZipEntry jarEntry = new ZipEntry("WEB-INF/lib/jenkins-core-1.0.jar");
+            if (storedJar) {
+                final CRC32 crc = new CRC32();
+                crc.update(jar);
+                jarEntry.setMethod(ZipEntry.STORED);
+                jarEntry.setSize(jar.length);
+                jarEntry.setCompressedSize(jar.length);
+                jarEntry.setCrc(crc.getValue());
+            }
+            zip.putNextEntry(jarEntry);
+            zip.write(jar);
+            zip.closeEntry();
+            for (int i = 0; i < jellyCount; i++) {
+                zip.putNextEntry(new ZipEntry("WEB-INF/classes/bench/view" + i + ".jelly"));
+                zip.write(generateJelly(i, 4 * 1024, 10));
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,23 @@
+package org.jenkinsci.unusedcode;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual jmh arguments, always with the gc profiler to report the
+ * allocation rate.
+ */
+public final class Benchmarks {
+    private Benchmarks() {
+        super();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Options options = new OptionsBuilder().parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
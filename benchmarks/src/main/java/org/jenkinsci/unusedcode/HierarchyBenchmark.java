@@ -0,0 +1,62 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Resolution of a call site in the core hierarchy, and in the hierarchy of a plugin which falls
+ * back to the core hierarchy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HierarchyBenchmark {
+    @Param({ "1000", "10000" })
+    int classCount;
+
+    @Param({ "4", "32" })
+    int hierarchyDepth;
+
+    private Hierarchy coreHierarchy;
+    private Hierarchy pluginHierarchy;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Indexer indexer = new Indexer();
+        indexer.indexJar(new ByteArrayInputStream(
+                BenchmarkFixtures.generateJar(classCount, hierarchyDepth, 2, 0)));
+        coreHierarchy = indexer.getHierarchy();
+        pluginHierarchy = new Hierarchy(coreHierarchy);
+        pluginHierarchy.registerHierarchyOfClass("bench/plugin/PluginClass",
+                BenchmarkFixtures.getClassName(hierarchyDepth - 1), new String[0]);
+    }
+
+    private String nextClassName() {
+        index = (index + 7919) % classCount;
+        return BenchmarkFixtures.getClassName(index);
+    }
+
+    @Benchmark
+    public Set<String> core() {
+        return coreHierarchy.getPolymorphicMethods(nextClassName(), "method1",
+                "(Ljava/lang/String;)I");
+    }
+
+    @Benchmark
+    public Set<String> plugin() {
+        return pluginHierarchy.getPolymorphicMethods(nextClassName(), "method1",
+                "(Ljava/lang/String;)I");
+    }
+}
@@ -0,0 +1,40 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Indexing of a jar of generated classes, including the freeze of the hierarchy and of the
+ * method ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IndexerBenchmark {
+    @Param({ "1000", "5000" })
+    int classCount;
+
+    private byte[] jar;
+
+    @Setup
+    public void setUp() throws IOException {
+        jar = BenchmarkFixtures.generateJar(classCount, 4, 10, 3);
+    }
+
+    @Benchmark
+    public Indexer indexJar() throws IOException {
+        final Indexer indexer = new Indexer();
+        indexer.indexJar(new ByteArrayInputStream(jar));
+        return indexer;
+    }
+}
@@ -0,0 +1,63 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Exclusion of the methods which override methods of java classes, for a class which extends
+ * java.util.AbstractList through 3 other classes, once the methods of the java classes are
+ * cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JavaHelperBenchmark {
+    private static final int HIERARCHY_DEPTH = 4;
+
+    @Param({ "10", "100" })
+    int methodCount;
+
+    private final Map<String, String[]> supertypesByClass = new HashMap<>();
+    private Set<String> classMethods;
+
+    @Setup
+    public void setUp() {
+        String className = null;
+        for (int i = 0; i < HIERARCHY_DEPTH; i++) {
+            final ClassReader classReader = new ClassReader(BenchmarkFixtures.generateClass(i,
+                    HIERARCHY_DEPTH, HIERARCHY_DEPTH, methodCount, 0));
+            className = classReader.getClassName();
+            supertypesByClass.put(className,
+                    new String[] { classReader.getSuperName(), "java/io/Serializable" });
+        }
+        classMethods = new LinkedHashSet<>();
+        for (int i = 0; i < methodCount; i++) {
+            classMethods.add(Indexer.getMethodKey(className, BenchmarkFixtures.getMethodName(i),
+                    "(Ljava/lang/String;)I"));
+        }
+        classMethods.add(Indexer.getMethodKey(className, "get", "(I)Ljava/lang/Object;"));
+        classMethods.add(Indexer.getMethodKey(className, "size", "()I"));
+        // fills the cache of the methods of java classes
+        JavaHelper.excludeJavaMethods(new LinkedHashSet<>(classMethods), supertypesByClass);
+    }
+
+    @Benchmark
+    public Set<String> excludeJavaMethods() {
+        final Set<String> methods = new LinkedHashSet<>(classMethods);
+        JavaHelper.excludeJavaMethods(methods, supertypesByClass);
+        return methods;
+    }
+}
@@ -0,0 +1,55 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Tokenization of a jelly file and search of its words in the index of the core methods, as in
+ * the analysis of a jelly file by the Analyzer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JellyBenchmark {
+    @Param({ "4096", "65536" })
+    int jellySize;
+
+    private byte[] jelly;
+    private Indexer indexer;
+    private JellyMatcher jellyMatcher;
+
+    @Setup
+    public void setUp() throws IOException {
+        indexer = new Indexer();
+        indexer.indexJar(new ByteArrayInputStream(BenchmarkFixtures.generateJar(1000, 4, 10, 0)));
+        jellyMatcher = new JellyMatcher(indexer.getJellyIndex());
+        jelly = BenchmarkFixtures.generateJelly(0, jellySize, 20);
+    }
+
+    @Benchmark
+    public AnalysisSummary collect() throws IOException {
+        final AnalysisSummary summary = new AnalysisSummary();
+        jellyMatcher.collect(new ByteArrayInputStream(jelly), summary);
+        return summary;
+    }
+
+    @Benchmark
+    public AtomicBitSet collectAndMatch() throws IOException {
+        final AnalysisSummary summary = new AnalysisSummary();
+        jellyMatcher.collect(new ByteArrayInputStream(jelly), summary);
+        // the bits are not set again, which does not change the cost of the lookups
+        final AtomicBitSet unusedMethods = indexer.getUnusedMethods();
+        jellyMatcher.match(summary, unusedMethods);
+        return unusedMethods;
+    }
+}
@@ -0,0 +1,84 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Iteration on the classes and jelly files of a war with a nested jar, reading all their bytes
+ * in the memory-mapped war as the analysis of a plugin does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ZipArchiveBenchmark {
+    @Param({ "true", "false" })
+    boolean storedJar;
+
+    private File war;
+
+    @Setup
+    public void setUp() throws IOException {
+        war = BenchmarkFixtures.generateWar(2000, 200, storedJar);
+    }
+
+    @TearDown
+    public void tearDown() {
+        war.delete();
+    }
+
+    @Benchmark
+    public long readClassesAndJellyFiles() throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        final byte[] chunk = new byte[16 * 1024];
+        final Inflater inflater = new Inflater(true);
+        final ZipArchive warArchive = ZipArchive.map(war);
+        try {
+            long length = 0;
+            for (int i = 0; i < warArchive.size(); i++) {
+                final String fileName = warArchive.getName(i);
+                if (fileName.startsWith("WEB-INF/lib/") && fileName.endsWith(".jar")) {
+                    final ZipArchive jarArchive = warArchive.openNested(i, inflater, chunk,
+                            new ZipArchive.BufferHolder());
+                    for (int j = 0; j < jarArchive.size(); j++) {
+                        length += read(jarArchive, j, inflater, chunk, buffer);
+                    }
+                } else if (fileName.startsWith("WEB-INF/classes/")) {
+                    length += read(warArchive, i, inflater, chunk, buffer);
+                }
+            }
+            return length;
+        } finally {
+            inflater.end();
+            warArchive.close();
+        }
+    }
+
+    private static long read(ZipArchive archive, int index, Inflater inflater, byte[] chunk,
+            byte[] buffer) throws IOException {
+        final String fileName = archive.getName(index);
+        if (!fileName.endsWith(".class") && !fileName.endsWith(".jelly")) {
+            return 0;
+        }
+        long length = 0;
+        final InputStream input = archive.getInputStream(index, inflater, chunk);
+        int n = input.read(buffer);
+        while (n != -1) {
+            length += n;
+            n = input.read(buffer);
+        }
+        return length;
+    }
+}
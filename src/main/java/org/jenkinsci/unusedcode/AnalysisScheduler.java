@@ -0,0 +1,188 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor of the analysis of the core and of the plugins, which starts the most costly tasks
+ * first, so that a big file does not start last and leave the other threads idle at the end.
+ * The cost of a file is its cpu time in the previous run if known, or else an estimation from
+ * its size. The costs are kept by path relative to the work directory, which includes the version.
+ * Among tasks of similar cost, the files which removed
+ * the most methods in the previous run start first, so the next tasks have less methods to
+ * search.
+ */
+class AnalysisScheduler {
+    // relative to user dir, kept between runs like the downloaded files
+    private static final File COSTS_FILE = new File(JenkinsFile.WORK_DIRECTORY,
+            "analysis-costs.txt");
+    // estimations measured on a synthetic corpus, when a file was not analyzed before
+    private static final long SCAN_NANOS_PER_BYTE = 300;
+    private static final long SUMMARY_NANOS_PER_BYTE = 150;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Cost> previousCosts;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private static class Cost {
+        final long cpuNanos;
+        final int methodsRemoved;
+        final boolean summaryReused;
+
+        Cost(long cpuNanos, int methodsRemoved, boolean summaryReused) {
+            super();
+            this.cpuNanos = cpuNanos;
+            this.methodsRemoved = methodsRemoved;
+            this.summaryReused = summaryReused;
+        }
+    }
+
+    private static class PrioritizedTask extends FutureTask<Object>
+            implements Comparable<PrioritizedTask> {
+        private final int costClass;
+        private final long cost;
+        private final int methodsRemoved;
+        private final long sequence;
+
+        PrioritizedTask(Callable<Object> callable, long cost, int methodsRemoved,
+                long sequence) {
+            super(callable);
+            // costs in the same power of 2 are similar
+            this.costClass = 64 - Long.numberOfLeadingZeros(cost);
+            this.cost = cost;
+            this.methodsRemoved = methodsRemoved;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (costClass != other.costClass) {
+                return costClass > other.costClass ? -1 : 1;
+            } else if (methodsRemoved != other.methodsRemoved) {
+                return methodsRemoved > other.methodsRemoved ? -1 : 1;
+            } else if (cost != other.cost) {
+                return cost > other.cost ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    AnalysisScheduler(int threads) {
+        super();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        this.previousCosts = readCosts();
+    }
+
+    Future<Object> submit(File file, Callable<Object> task) {
+        final Cost previousCost = previousCosts.get(getKey(file));
+        final long cost = estimateCost(file, previousCost);
+        final int methodsRemoved = previousCost != null ? previousCost.methodsRemoved : 0;
+        final PrioritizedTask prioritizedTask = new PrioritizedTask(task, cost, methodsRemoved,
+                sequence.getAndIncrement());
+        executor.execute(prioritizedTask);
+        return prioritizedTask;
+    }
+
+    private static long estimateCost(File file, Cost previousCost) {
+        final boolean summaryExists = AnalysisSummary.getSummaryFile(file).exists();
+        if (previousCost != null && previousCost.summaryReused == summaryExists) {
+            return Math.max(previousCost.cpuNanos, 1);
+        }
+        // not reading the file, which is read by the analysis
+        return Math.max(file.length(), 1)
+                * (summaryExists ? SUMMARY_NANOS_PER_BYTE : SCAN_NANOS_PER_BYTE);
+    }
+
+    // "ant/1.2/ant.hpi" or "core/2.0/jenkins.war": the names of the files are not unique
+    private static String getKey(File file) {
+        final Path workPath = JenkinsFile.WORK_DIRECTORY.toPath().toAbsolutePath();
+        return workPath.relativize(file.toPath().toAbsolutePath()).toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static Map<String, Cost> readCosts() {
+        final Map<String, Cost> costs = new HashMap<>();
+        try {
+            final Reader reader = new InputStreamReader(new FileInputStream(COSTS_FILE),
+                    StandardCharsets.UTF_8);
+            final BufferedReader bufferedReader = new BufferedReader(reader);
+            try {
+                String line = bufferedReader.readLine();
+                while (line != null) {
+                    final String[] values = line.split("\t");
+                    if (values.length == 4 && !line.startsWith("#")) {
+                        costs.put(values[0], new Cost(Long.parseLong(values[1]),
+                                Integer.parseInt(values[2]), Boolean.parseBoolean(values[3])));
+                    }
+                    line = bufferedReader.readLine();
+                }
+            } finally {
+                bufferedReader.close();
+            }
+        } catch (final FileNotFoundException e) {
+            // first run
+            return costs;
+        } catch (final IOException | NumberFormatException e) {
+            Log.log("ignoring " + COSTS_FILE.getName() + ", because " + e.toString());
+        }
+        return costs;
+    }
+
+    /**
+     * Saves the costs measured in this run, for the order of the tasks in the next run.
+     */
+    void saveCosts(List<Metrics.FileMetrics> files) throws IOException {
+        for (final Metrics.FileMetrics file : files) {
+            previousCosts.put(getKey(file.getFile()), new Cost(file.getCpuNanos(),
+                    file.getMethodsRemoved(), file.isSummaryReused()));
+        }
+        // the versions which are no longer downloaded
+        final Iterator<String> keys = previousCosts.keySet().iterator();
+        while (keys.hasNext()) {
+            if (!new File(JenkinsFile.WORK_DIRECTORY, keys.next()).exists()) {
+                keys.remove();
+            }
+        }
+        COSTS_FILE.getParentFile().mkdirs();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(COSTS_FILE), StandardCharsets.UTF_8));
+        try {
+            writer.write("# file path, cpu nanoseconds, methods removed, summary reused\n");
+            for (final Map.Entry<String, Cost> entry : previousCosts.entrySet()) {
+                final Cost cost = entry.getValue();
+                writer.write(entry.getKey() + '\t' + cost.cpuNanos + '\t' + cost.methodsRemoved
+                        + '\t' + cost.summaryReused + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
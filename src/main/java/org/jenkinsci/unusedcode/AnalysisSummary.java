@@ -0,0 +1,257 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the analysis needs from a war or a plugin: its class hierarchy, its calls and the words of
+ * its jelly files. It does not depend on the jenkins core api, so it is written in a file next to
+ * the war or plugin and it is read again in the next runs instead of parsing the archive.
+ */
+public class AnalysisSummary {
+    private static final int MAGIC = 0x55434453;
+    // to increment when what is in the summary or how it is built changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String EXTENSION = ".summary";
+
+    // for each class: class name, super class name and interface names
+    private final List<String[]> classes = new ArrayList<>();
+    private final Set<CallSite> callSites = new HashSet<>();
+    private final WordSet jellyWords = new WordSet();
+    // texts between whitespaces of jelly files, which are not only made of word characters
+    private final WordSet jellySegments = new WordSet();
+
+    public static File getSummaryFile(File file) {
+        return new File(file.getPath() + EXTENSION);
+    }
+
+    /**
+     * @return SHA-1 of the content of the file, in hexadecimal
+     */
+    public static String hash(File file) throws IOException {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            try {
+                messageDigest.update(buffer);
+            } finally {
+                ZipArchive.unmap(buffer);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : messageDigest.digest()) {
+            sb.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public void addClass(String className, String superClassName, String[] interfaceNames) {
+        final String[] names = new String[interfaceNames.length + 2];
+        names[0] = className;
+        names[1] = superClassName;
+        System.arraycopy(interfaceNames, 0, names, 2, interfaceNames.length);
+        classes.add(names);
+    }
+
+    public void addCallSite(CallSite callSite) {
+        callSites.add(callSite);
+    }
+
+    void addJellyWord(char[] chars, int start, int end) {
+        jellyWords.add(chars, start, end);
+    }
+
+    void addJellySegment(char[] chars, int start, int end) {
+        jellySegments.add(chars, start, end);
+    }
+
+    /**
+     * Adds the content of another summary, such as the summary of a part of the same war.
+     */
+    public void addAll(AnalysisSummary other) {
+        classes.addAll(other.classes);
+        callSites.addAll(other.callSites);
+        jellyWords.addAll(other.jellyWords);
+        jellySegments.addAll(other.jellySegments);
+    }
+
+    public List<String[]> getClasses() {
+        return classes;
+    }
+
+    public Set<CallSite> getCallSites() {
+        return callSites;
+    }
+
+    public Set<String> getJellyWords() {
+        return jellyWords;
+    }
+
+    public Set<String> getJellySegments() {
+        return jellySegments;
+    }
+
+    /**
+     * @return the summary in the file, or null if the file does not exist or if it was written
+     *         for another content or by another version
+     */
+    public static AnalysisSummary read(File summaryFile, String hash) throws IOException {
+        final DataInputStream input;
+        try {
+            input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(summaryFile), 64 * 1024));
+        } catch (final FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION
+                    || !hash.equals(input.readUTF())) {
+                return null;
+            }
+            final String[] strings = new String[input.readInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                final int length = input.readInt();
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                input.readFully(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            final AnalysisSummary summary = new AnalysisSummary();
+            final int classCount = input.readInt();
+            for (int i = 0; i < classCount; i++) {
+                final String[] names = new String[input.readInt()];
+                for (int j = 0; j < names.length; j++) {
+                    // the super class name is null for module-info
+                    final int stringId = input.readInt();
+                    names[j] = stringId >= 0 ? strings[stringId] : null;
+                }
+                summary.classes.add(names);
+            }
+            final int callSiteCount = input.readInt();
+            for (int i = 0; i < callSiteCount; i++) {
+                summary.callSites.add(new CallSite(strings[input.readInt()],
+                        strings[input.readInt()], strings[input.readInt()]));
+            }
+            readStrings(input, strings, summary.jellyWords);
+            readStrings(input, strings, summary.jellySegments);
+            return summary;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void readStrings(DataInputStream input, String[] strings,
+            Collection<String> output) throws IOException {
+        final int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            output.add(strings[input.readInt()]);
+        }
+    }
+
+    /**
+     * Writes the summary to the file, which is replaced only when it is complete.
+     */
+    public void write(File summaryFile, String hash) throws IOException {
+        final Map<String, Integer> stringIds = new LinkedHashMap<>();
+        for (final String[] names : classes) {
+            addStrings(stringIds, Arrays.asList(names));
+        }
+        for (final CallSite callSite : callSites) {
+            addStrings(stringIds, Arrays.asList(callSite.getClassName(), callSite.getName(),
+                    callSite.getDesc()));
+        }
+        addStrings(stringIds, jellyWords);
+        addStrings(stringIds, jellySegments);
+
+        final File tempFile = new File(summaryFile.getPath() + ".tmp");
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(hash);
+            output.writeInt(stringIds.size());
+            for (final String string : stringIds.keySet()) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            output.writeInt(classes.size());
+            for (final String[] names : classes) {
+                output.writeInt(names.length);
+                for (final String name : names) {
+                    output.writeInt(name != null ? stringIds.get(name) : -1);
+                }
+            }
+            output.writeInt(callSites.size());
+            for (final CallSite callSite : callSites) {
+                output.writeInt(stringIds.get(callSite.getClassName()));
+                output.writeInt(stringIds.get(callSite.getName()));
+                output.writeInt(stringIds.get(callSite.getDesc()));
+            }
+            writeStrings(output, stringIds, jellyWords);
+            writeStrings(output, stringIds, jellySegments);
+        } finally {
+            output.close();
+        }
+        try {
+            Files.move(tempFile.toPath(), summaryFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), summaryFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void addStrings(Map<String, Integer> stringIds, Collection<String> strings) {
+        for (final String string : strings) {
+            if (string != null && !stringIds.containsKey(string)) {
+                stringIds.put(string, stringIds.size());
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream output, Map<String, Integer> stringIds,
+            Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (final String string : strings) {
+            output.writeInt(stringIds.get(string));
+        }
+    }
+}
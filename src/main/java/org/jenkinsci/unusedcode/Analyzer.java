@@ -1,15 +1,23 @@
 package org.jenkinsci.unusedcode;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
@@ -22,125 +30,541 @@ public class Analyzer {
     // they are just wrappers and not real usage
     public static final Set<String> IGNORED_PLUGINS = Collections
             .unmodifiableSet(new HashSet<>(Arrays.asList("python-wrapper.hpi")));
+    // for example: -Dunusedcode.parallelScanSize=0 to scan all files with several threads
+    private static final long PARALLEL_SCAN_SIZE = Long.getLong("unusedcode.parallelScanSize",
+            8 * 1024 * 1024);
+    // number of entries scanned by one sub-task of a parallel scan
+    private static final int ENTRIES_BATCH_SIZE = 256;
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors());
+    // for example: -Dunusedcode.libraryCacheSize=0 to not share the summaries of library jars
+    private static final long MAX_LIBRARY_CALL_SITES = Long
+            .getLong("unusedcode.libraryCacheSize", 1000000);
+    // summaries of the library jars bundled in plugins, by crc and size of the jar
+    private static final ConcurrentMap<String, AnalysisSummary> LIBRARY_SUMMARIES =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong LIBRARY_CALL_SITES = new AtomicLong();
+    // buffers to inflate the nested jars, reused by each thread when the scan of a jar is done
+    private static final ThreadLocal<Deque<ZipArchive.BufferHolder>> BUFFER_HOLDERS =
+            new ThreadLocal<Deque<ZipArchive.BufferHolder>>() {
+                @Override
+                protected Deque<ZipArchive.BufferHolder> initialValue() {
+                    return new ArrayDeque<>();
+                }
+            };
+    // bigger buffers are not kept by the threads
+    private static final int MAX_REUSED_BUFFER_SIZE = 16 * 1024 * 1024;
+    private static final String PINYIN_CLASS =
+            "com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class";
 
-    private final Set<String> methods;
-    private final Hierarchy coreHierarchy;
-    private final Hierarchy pluginHierarchy;
+    private final Indexer indexer;
+    // for each core version: its unused methods, and the hierarchy of the plugin above the core
+    private final AtomicBitSet[] unusedMethods;
+    private final Hierarchy[] pluginHierarchies;
+    private final JellyMatcher jellyMatcher;
+    // methods used by each file, in daemon mode (may be null)
+    private final UsageIndex usageIndex;
+    // summary of the war being scanned
+    private AnalysisSummary summary;
+    private Metrics.FileMetrics fileMetrics;
 
     public Analyzer(Indexer indexer) {
+        this(indexer, null);
+    }
+
+    Analyzer(Indexer indexer, UsageIndex usageIndex) {
         super();
-        this.methods = indexer.getMethods();
-        this.coreHierarchy = indexer.getHierarchy();
-        this.pluginHierarchy = new Hierarchy(coreHierarchy);
+        this.indexer = indexer;
+        this.usageIndex = usageIndex;
+        this.unusedMethods = new AtomicBitSet[indexer.getVersionCount()];
+        this.pluginHierarchies = new Hierarchy[unusedMethods.length];
+        for (int version = 0; version < unusedMethods.length; version++) {
+            unusedMethods[version] = indexer.getUnusedMethods(version);
+            pluginHierarchies[version] = new Hierarchy(indexer.getHierarchy(version));
+        }
+        this.jellyMatcher = new JellyMatcher(indexer.getJellyIndex());
     }
 
-    private void analyzeWar(File file) throws IOException {
-        final WarReader warReader = new WarReader(file, false);
+    // to scan a part of an archive in another thread
+    private Analyzer(Analyzer parent) {
+        super();
+        this.indexer = parent.indexer;
+        this.unusedMethods = parent.unusedMethods;
+        this.pluginHierarchies = parent.pluginHierarchies;
+        this.usageIndex = parent.usageIndex;
+        this.jellyMatcher = new JellyMatcher(indexer.getJellyIndex());
+    }
+
+    /**
+     * @param coreVersion index of the core version of this war, or -1 for a plugin which is
+     *        analyzed for all core versions
+     */
+    private void analyzeWar(File file, String version, boolean indexClasses, int coreVersion)
+            throws IOException {
+        fileMetrics = new Metrics.FileMetrics(file);
+        final JfrEvent event = JfrEvent
+                .begin(indexClasses ? JfrEvent.Type.PLUGIN_ANALYSIS : JfrEvent.Type.CORE_ANALYSIS);
+        AnalysisSummary summary = null;
         try {
-            String fileName = warReader.nextClass();
-            while (fileName != null) {
-                // ignore bad class com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class
-                if (!fileName.equals("com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class")) {
-                    analyzeClass(warReader.getInputStream());
+            final String hash = AnalysisSummary.hash(file);
+            final File summaryFile = AnalysisSummary.getSummaryFile(file);
+            summary = readSummary(summaryFile, hash);
+            fileMetrics.summaryReused = summary != null;
+            if (summary == null) {
+                summary = scanWar(file, indexClasses);
+                try {
+                    summary.write(summaryFile, hash);
+                } catch (final IOException e) {
+                    Log.log("unable to write " + summaryFile.getName() + ", because "
+                            + e.toString());
                 }
-                fileName = warReader.nextClass();
+            }
+            final BitSet usedMethods = usageIndex != null ? new BitSet() : null;
+            if (coreVersion >= 0) {
+                analyzeSummary(summary, coreVersion, usedMethods);
+            } else {
+                for (int i = 0; i < pluginHierarchies.length; i++) {
+                    analyzeSummary(summary, i, usedMethods);
+                }
+            }
+            // search with word boundaries, for less false negatives in jelly files
+            fileMetrics.methodsRemoved += jellyMatcher.match(summary, usedMethods,
+                    coreVersion >= 0 ? new AtomicBitSet[] { unusedMethods[coreVersion] }
+                            : unusedMethods);
+            if (usageIndex != null) {
+                usageIndex.put(new UsageIndex.Usage(file.getName(), version, coreVersion,
+                        usedMethods));
             }
         } finally {
-            warReader.close();
+            // the classes of the core are not in its summary
+            final int classCount = summary != null && indexClasses ? summary.getClasses().size()
+                    : fileMetrics.classesParsed;
+            event.commit(file.getName(), version, file.length(), classCount,
+                    fileMetrics.methodsRemoved);
+            Metrics.endFile(fileMetrics);
+            fileMetrics = null;
         }
+    }
 
-        final WarReader warReader2 = new WarReader(file, false);
+    private static AnalysisSummary readSummary(File summaryFile, String hash) {
         try {
-            String fileName = warReader2.nextJelly();
-            while (fileName != null) {
-                analyzeJelly(warReader2.getInputStream());
-                fileName = warReader2.nextJelly();
+            return AnalysisSummary.read(summaryFile, hash);
+        } catch (final IOException e) {
+            // the summary will be written again
+            Log.log("ignoring " + summaryFile.getName() + ", because " + e.toString());
+            return null;
+        }
+    }
+
+    // read classes and jelly files in one pass of the war: the tasks of the nested jars and of
+    // the batches of entries are run in this thread, or in the fork/join pool if the war is big,
+    // and their summaries are merged in the order of the entries
+    private AnalysisSummary scanWar(File file, boolean indexClasses) throws IOException {
+        final boolean parallel = file.length() >= PARALLEL_SCAN_SIZE;
+        final ZipArchive warArchive = ZipArchive.map(file);
+        boolean scanned = false;
+        try {
+            final ArchiveTask warTask = new ArchiveTask(file, warArchive, -1, indexClasses,
+                    parallel);
+            if (parallel) {
+                SCAN_POOL.invoke(warTask);
+            } else {
+                warTask.compute();
             }
+            // all the tasks are finished, even if one failed
+            scanned = true;
+            final AnalysisSummary merged = new AnalysisSummary();
+            warTask.merge(merged, fileMetrics);
+            return merged;
         } finally {
-            warReader2.close();
+            // after an error in the pool, a task may still read the war, which is then
+            // released by the garbage collector
+            if (scanned || !parallel) {
+                warArchive.close();
+            }
         }
     }
 
-    public void analyzeCore(File file) throws IOException {
-        analyzeWar(file);
+    /**
+     * @return key of the content of a nested jar, from its crc and its size in the central
+     *         directory, or null if its summary must not be shared with other plugins
+     */
+    private static String getLibraryKey(File file, ZipArchive warArchive, int index,
+            boolean indexClasses) {
+        // the jar of the plugin itself is not in other plugins,
+        // and the classes of the core are not in its summary
+        final String jarName = warArchive.getName(index).replace("WEB-INF/lib/", "");
+        if (!indexClasses || file.getName().equals(jarName.replace(".jar", ".hpi"))) {
+            return null;
+        }
+        return Long.toHexString(warArchive.getCrc(index)) + '-' + warArchive.getSize(index);
     }
 
-    public void analyzePlugin(File file) throws IOException {
-        if (IGNORED_PLUGINS.contains(file.getName())) {
-            return;
+    /**
+     * Scan of a part of a war, merged later in the summary of the war.
+     */
+    private abstract static class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // IOException or RuntimeException (such as of asm for a class too recent), caught so
+        // that the other tasks are joined before the archive is closed
+        Exception exception;
+        // cpu time of the task in a thread of the pool, without the tasks run while joining,
+        // since it is not in the cpu time of the thread analyzing the war
+        long cpuNanos;
+
+        // also called directly, to run the task in the current thread
+        @Override
+        protected abstract void compute();
+
+        abstract void merge(AnalysisSummary merged, Metrics.FileMetrics mergedMetrics)
+                throws IOException;
+
+        void addCpuNanos(long startCpuNanos) {
+            if (inForkJoinPool()) {
+                cpuNanos += Metrics.getCurrentThreadCpuTime() - startCpuNanos;
+            }
         }
-        Log.log("analyzing " + file.getName());
-        final WarReader warReader = new WarReader(file, false);
-        try {
-            String fileName = warReader.nextClass();
-            while (fileName != null) {
-                // ignore bad class com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class
-                if (!fileName.equals("com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class")) {
-                    indexClass(warReader.getInputStream());
+
+        void throwException() throws IOException {
+            if (exception instanceof IOException) {
+                throw (IOException) exception;
+            } else if (exception != null) {
+                throw (RuntimeException) exception;
+            } else if (isCompletedAbnormally()) {
+                // an error in a thread of the pool
+                throw new IOException(getException());
+            }
+        }
+    }
+
+    /**
+     * Scan of the war, or of a nested jar, which is split in tasks of nested jars and of
+     * batches of entries. The summary of a nested jar is merged as soon as its tasks are
+     * finished, so that the inflated jar is not kept until the merge of the war. The summary of
+     * a library jar is shared with the next plugins having the same jar.
+     */
+    private class ArchiveTask extends ScanTask {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final ZipArchive warArchive;
+        // index of the nested jar in the war, or -1 for the war
+        private final int nestedJarIndex;
+        private final boolean indexClasses;
+        private final boolean parallel;
+        private final List<ScanTask> subTasks = new ArrayList<>();
+        private String libraryKey;
+        private AnalysisSummary librarySummary;
+        // summary of the nested jar, merged from its tasks
+        private AnalysisSummary jarSummary;
+        private Metrics.FileMetrics jarMetrics;
+
+        ArchiveTask(File file, ZipArchive warArchive, int nestedJarIndex, boolean indexClasses,
+                boolean parallel) {
+            super();
+            this.file = file;
+            this.warArchive = warArchive;
+            this.nestedJarIndex = nestedJarIndex;
+            this.indexClasses = indexClasses;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            long startCpuNanos = Metrics.getCurrentThreadCpuTime();
+            ZipArchive.BufferHolder bufferHolder = null;
+            try {
+                final ZipArchive archive;
+                if (nestedJarIndex < 0) {
+                    archive = warArchive;
+                } else {
+                    libraryKey = getLibraryKey(file, warArchive, nestedJarIndex, indexClasses);
+                    librarySummary = libraryKey != null ? LIBRARY_SUMMARIES.get(libraryKey)
+                            : null;
+                    if (librarySummary != null) {
+                        return;
+                    }
+                    // the buffer is given back when the sub-tasks reading the jar are finished
+                    final Deque<ZipArchive.BufferHolder> bufferHolders = BUFFER_HOLDERS.get();
+                    bufferHolder = bufferHolders.isEmpty() ? new ZipArchive.BufferHolder()
+                            : bufferHolders.pop();
+                    archive = openNestedJar(bufferHolder);
+                }
+                split(archive);
+                // the sub-tasks have their own cpu time
+                addCpuNanos(startCpuNanos);
+                computeSubTasks();
+                startCpuNanos = Metrics.getCurrentThreadCpuTime();
+                if (nestedJarIndex >= 0) {
+                    mergeJar();
                 }
-                fileName = warReader.nextClass();
+            } catch (final IOException | RuntimeException e) {
+                exception = e;
+            } finally {
+                addCpuNanos(startCpuNanos);
+            }
+            // not after an error, when a sub-task may still read the buffer
+            if (bufferHolder != null && bufferHolder.getCapacity() <= MAX_REUSED_BUFFER_SIZE) {
+                BUFFER_HOLDERS.get().push(bufferHolder);
             }
-        } finally {
-            warReader.close();
         }
 
-        analyzeWar(file);
+        private void computeSubTasks() {
+            if (parallel) {
+                // unlike invokeAll, waits for every sub-task even if one fails
+                for (final ScanTask subTask : subTasks) {
+                    subTask.fork();
+                }
+                for (int i = subTasks.size() - 1; i >= 0; i--) {
+                    subTasks.get(i).quietlyJoin();
+                }
+            } else {
+                for (final ScanTask subTask : subTasks) {
+                    subTask.compute();
+                }
+            }
+        }
 
-        // final InputStream input = new FileInputStream(file);
-        // final JarReader jarReader = new JarReader(input);
-        // try {
-        // String fileName = jarReader.nextClass();
-        // while (fileName != null) {
-        // indexClass(jarReader.getInputStream());
-        // fileName = jarReader.nextClass();
-        // }
-        // } finally {
-        // jarReader.close();
-        // input.close();
-        // }
-    }
+        private void mergeJar() throws IOException {
+            jarSummary = new AnalysisSummary();
+            jarMetrics = new Metrics.FileMetrics(new File(""));
+            for (final ScanTask subTask : subTasks) {
+                subTask.merge(jarSummary, jarMetrics);
+            }
+            subTasks.clear();
+            // the summary is not modified after, and when the cache is full,
+            // the summaries already cached are kept
+            if (libraryKey != null && LIBRARY_CALL_SITES.get() < MAX_LIBRARY_CALL_SITES
+                    && LIBRARY_SUMMARIES.putIfAbsent(libraryKey, jarSummary) == null) {
+                LIBRARY_CALL_SITES.addAndGet(jarSummary.getCallSites().size());
+            }
+        }
 
-    private void indexClass(InputStream input) throws IOException {
-        final ClassReader classReader = new ClassReader(input);
-        pluginHierarchy.registerHierarchyOfClass(classReader);
+        private ZipArchive openNestedJar(ZipArchive.BufferHolder bufferHolder)
+                throws IOException {
+            final Inflater inflater = new Inflater(true);
+            try {
+                return warArchive.openNested(nestedJarIndex, inflater, new byte[16 * 1024],
+                        bufferHolder);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private void split(ZipArchive archive) {
+            final int batchSize = parallel ? ENTRIES_BATCH_SIZE : Integer.MAX_VALUE;
+            final List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < archive.size(); i++) {
+                final String fileName = archive.getName(i);
+                if (nestedJarIndex < 0 && fileName.startsWith("WEB-INF/lib/")
+                        && fileName.endsWith(".jar")) {
+                    addEntriesTask(archive, batch);
+                    subTasks.add(new ArchiveTask(file, archive, i, indexClasses, parallel));
+                } else if ((nestedJarIndex >= 0 || fileName.startsWith("WEB-INF/classes/"))
+                        && JarReader.endsWith(fileName, ".class", ".jelly")) {
+                    batch.add(i);
+                    if (batch.size() == batchSize) {
+                        addEntriesTask(archive, batch);
+                    }
+                }
+            }
+            addEntriesTask(archive, batch);
+        }
+
+        private void addEntriesTask(ZipArchive archive, List<Integer> batch) {
+            if (!batch.isEmpty()) {
+                final int[] indexes = new int[batch.size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = batch.get(i);
+                }
+                subTasks.add(new EntriesTask(archive, indexes, indexClasses));
+                batch.clear();
+            }
+        }
+
+        @Override
+        void merge(AnalysisSummary merged, Metrics.FileMetrics mergedMetrics)
+                throws IOException {
+            throwException();
+            mergedMetrics.addCpuNanos(cpuNanos);
+            if (librarySummary != null) {
+                merged.addAll(librarySummary);
+                mergedMetrics.nestedJarsReused++;
+                return;
+            }
+            if (nestedJarIndex < 0) {
+                for (final ScanTask subTask : subTasks) {
+                    subTask.merge(merged, mergedMetrics);
+                }
+                return;
+            }
+            if (!warArchive.isStored(nestedJarIndex)) {
+                mergedMetrics.bytesInflated += warArchive.getSize(nestedJarIndex);
+            }
+            merged.addAll(jarSummary);
+            mergedMetrics.addCounters(jarMetrics);
+        }
     }
 
-    private void analyzeJelly(InputStream input) throws IOException {
-        final ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
-        final byte[] buffer = new byte[1024];
-        int len = input.read(buffer);
-        while (len != -1) {
-            output.write(buffer, 0, len);
-            len = input.read(buffer);
+    /**
+     * Scan of some entries of the war or of a nested jar, by a new Analyzer since the summary
+     * and the jelly matcher are not thread-safe.
+     */
+    private class EntriesTask extends ScanTask {
+        private static final long serialVersionUID = 1L;
+
+        // null when the task is finished, since the archive may be a nested jar
+        private ZipArchive archive;
+        private final int[] indexes;
+        private final boolean indexClasses;
+        private AnalysisSummary result;
+        private Metrics.FileMetrics resultMetrics;
+
+        EntriesTask(ZipArchive archive, int[] indexes, boolean indexClasses) {
+            super();
+            this.archive = archive;
+            this.indexes = indexes;
+            this.indexClasses = indexClasses;
+        }
+
+        @Override
+        protected void compute() {
+            final long startCpuNanos = Metrics.getCurrentThreadCpuTime();
+            final Analyzer analyzer = new Analyzer(Analyzer.this);
+            analyzer.summary = new AnalysisSummary();
+            analyzer.fileMetrics = new Metrics.FileMetrics(new File(""));
+            final Inflater inflater = new Inflater(true);
+            try {
+                final byte[] chunk = new byte[16 * 1024];
+                for (final int index : indexes) {
+                    final String fileName = archive.getName(index);
+                    if (!archive.isStored(index)) {
+                        analyzer.fileMetrics.bytesInflated += archive.getSize(index);
+                    }
+                    if (fileName.endsWith(".jelly")) {
+                        analyzer.analyzeJelly(archive.getInputStream(index, inflater, chunk));
+                    } else if (!fileName.equals(PINYIN_CLASS)) {
+                        // ignore bad class com/ibm/icu/impl/data/LocaleElements_zh__PINYIN.class
+                        analyzer.analyzeClass(archive.getInputStream(index, inflater, chunk),
+                                indexClasses);
+                    }
+                }
+                result = analyzer.summary;
+                resultMetrics = analyzer.fileMetrics;
+            } catch (final IOException | RuntimeException e) {
+                exception = e;
+            } finally {
+                inflater.end();
+                archive = null;
+                addCpuNanos(startCpuNanos);
+            }
         }
-        final String string = new String(output.toByteArray(), StandardCharsets.UTF_8);
 
-        final Set<String> methods2;
-        synchronized (methods) {
-            methods2 = new HashSet<>(methods);
+        @Override
+        void merge(AnalysisSummary merged, Metrics.FileMetrics mergedMetrics)
+                throws IOException {
+            throwException();
+            mergedMetrics.addCpuNanos(cpuNanos);
+            merged.addAll(result);
+            mergedMetrics.addCounters(resultMetrics);
+        }
+    }
+
+    // resolve the calls only when the hierarchy of the plugin is complete
+    private void analyzeSummary(AnalysisSummary analysisSummary, int coreVersion,
+            BitSet usedMethods) {
+        final Hierarchy pluginHierarchy = pluginHierarchies[coreVersion];
+        final AtomicBitSet versionUnusedMethods = unusedMethods[coreVersion];
+        for (final String[] names : analysisSummary.getClasses()) {
+            pluginHierarchy.registerHierarchyOfClass(names[0], names[1],
+                    Arrays.copyOfRange(names, 2, names.length));
         }
-        for (final String method : methods2) {
-            final String methodName = method.substring(0, method.lastIndexOf('('));
-            // regex to search with word boundaries, for less false negatives in jelly files
-            final String regex = ".*\\b"
-                    + methodName.substring(methodName.lastIndexOf(Indexer.SEPARATOR) + 1) + "\\b.*";
-            final Pattern pattern = Pattern.compile(regex, Pattern.DOTALL);
-            if (pattern.matcher(string).matches()) {
-                methods.remove(method);
+        for (final CallSite callSite : analysisSummary.getCallSites()) {
+            // calls on a class unknown to the hierarchies, like most calls of the libraries in
+            // plugins, can not resolve to a method of jenkins core
+            if (!pluginHierarchy.isKnownClass(callSite.getClassName())) {
+                continue;
+            }
+            fileMetrics.hierarchyResolutions++;
+            for (final String method : pluginHierarchy.getPolymorphicMethods(
+                    callSite.getClassName(), callSite.getName(), callSite.getDesc())) {
+                final int methodId = indexer.getMethodId(method);
+                if (methodId < 0) {
+                    continue;
+                }
+                if (versionUnusedMethods.clear(methodId)) {
+                    fileMetrics.methodsRemoved++;
+                }
+                if (usedMethods != null) {
+                    usedMethods.set(methodId);
+                }
             }
         }
     }
 
-    private void analyzeClass(InputStream input) throws IOException {
+    public void analyzeCore(File file) throws IOException {
+        analyzeCore(file, null);
+    }
+
+    public void analyzeCore(File file, String version) throws IOException {
+        analyzeCore(file, version, 0);
+    }
+
+    /**
+     * @param coreVersion index of this core in the wars given to
+     *        {@link Indexer#indexJenkinsCores(java.util.List)}
+     */
+    public void analyzeCore(File file, String version, int coreVersion) throws IOException {
+        analyzeWar(file, version, false, coreVersion);
+    }
+
+    public void analyzePlugin(File file) throws IOException {
+        analyzePlugin(file, null);
+    }
+
+    public void analyzePlugin(File file, String version) throws IOException {
+        if (IGNORED_PLUGINS.contains(file.getName())) {
+            return;
+        }
+        Log.log("analyzing " + file.getName());
+        analyzeWar(file, version, true, -1);
+    }
+
+    private void analyzeJelly(InputStream input) throws IOException {
+        fileMetrics.jellyFilesScanned++;
+        jellyMatcher.collect(input, summary);
+    }
+
+    private void analyzeClass(InputStream input, boolean indexClass) throws IOException {
         final ClassReader classReader = new ClassReader(input);
-        final ClassVisitor classVisitor = new CallersClassVisitor(classReader.getClassName());
-        classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        fileMetrics.classesParsed++;
+        if (indexClass) {
+            summary.addClass(classReader.getClassName(), classReader.getSuperName(),
+                    classReader.getInterfaces());
+        }
+        readCalls(classReader);
+    }
+
+    /**
+     * Calls {@link #methodCalled(String, String, String)} for each call of the class, and for
+     * each method with an annotation which makes it called.
+     */
+    void readCalls(ClassReader classReader) {
+        // the calls are read in the constant pool, and the methods are visited only if needed
+        if (ConstantPool.readMethodRefs(classReader, this)) {
+            final ClassVisitor classVisitor = new CallersClassVisitor(classReader.getClassName());
+            classReader.accept(classVisitor,
+                    ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
     }
 
     void methodCalled(String className, String name, String desc) {
+        fileMetrics.callSitesVisited++;
         // Calls to java and javax are ignored first
         if (!JavaHelper.isJavaClass(className)) {
-            methods.removeAll(pluginHierarchy.getPolymorphicMethods(className, name, desc));
+            // the same call is often found many times in a plugin, it is resolved only once
+            summary.addCallSite(new CallSite(className, name, desc));
         }
     }
 
@@ -161,7 +585,7 @@ public class Analyzer {
     }
 
     /**
-     * Implementation of ASM Method Visitor.
+     * Implementation of ASM Method Visitor, for the annotations of the methods.
      */
     private class CallersMethodVisitor extends MethodVisitor {
         private final String className;
@@ -187,19 +611,6 @@ public class Analyzer {
             return null;
         }
 
-        @Override
-        public void visitMethodInsn(int opcode, String owner, String name, String desc) {
-            // log("\t" + owner + " " + name + " " + desc);
-            methodCalled(owner, name, desc);
-        }
-
-        @Override
-        public void visitMethodInsn(int opcode, String owner, String name, String desc,
-                boolean itf) {
-            // log("\t" + owner + " " + name + " " + desc);
-            methodCalled(owner, name, desc);
-        }
-
         // searching unused fields would cause many false positives
         // because some fields are used directly in jelly views (such as
         // HistoryPageFilter.hasUpPage)
@@ -0,0 +1,87 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size bit set which can be read and modified by several threads without lock.
+ */
+public class AtomicBitSet {
+    private final int size;
+    private final AtomicLongArray words;
+
+    public AtomicBitSet(int size) {
+        super();
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean get(int index) {
+        return (words.get(index >>> 6) & 1L << index) != 0;
+    }
+
+    public void setAll() {
+        final int length = words.length();
+        for (int i = 0; i < length; i++) {
+            final int remaining = size - (i << 6);
+            words.set(i, remaining >= 64 ? -1L : (1L << remaining) - 1);
+        }
+    }
+
+    public void set(int index) {
+        final int wordIndex = index >>> 6;
+        final long mask = 1L << index;
+        long word = words.get(wordIndex);
+        while ((word & mask) == 0 && !words.compareAndSet(wordIndex, word, word | mask)) {
+            word = words.get(wordIndex);
+        }
+    }
+
+    /**
+     * @return true if the bit was set before this call
+     */
+    public boolean clear(int index) {
+        final int wordIndex = index >>> 6;
+        final long mask = 1L << index;
+        long word = words.get(wordIndex);
+        // the common case of a bit already cleared is only a volatile read
+        while ((word & mask) != 0) {
+            if (words.compareAndSet(wordIndex, word, word & ~mask)) {
+                return true;
+            }
+            word = words.get(wordIndex);
+        }
+        return false;
+    }
+
+    /**
+     * @return index of the first bit set starting at fromIndex, or -1 if there is none
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int wordIndex = fromIndex >>> 6;
+        long word = words.get(wordIndex) & -1L << fromIndex;
+        while (word == 0) {
+            wordIndex++;
+            if (wordIndex == words.length()) {
+                return -1;
+            }
+            word = words.get(wordIndex);
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public int cardinality() {
+        int count = 0;
+        final int length = words.length();
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a compact binary file: the int MAGIC and FORMAT_VERSION, then for each method the byte 1
+ * followed by the class name (such as hudson.model.Run), method name, descriptor and signature,
+ * then the byte 0 and the int count of methods. The strings are in modified UTF-8 (as in
+ * {@link DataOutputStream#writeUTF(String)}). The class name is first a var int: 0 if the class
+ * is new, followed by its name, or else 1 + the index of the class in the table of the classes
+ * already written.
+ */
+class BinaryReportWriter implements ReportWriter {
+    private static final int MAGIC = 0x55435242;
+    private static final int FORMAT_VERSION = 2;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private int count;
+
+    BinaryReportWriter(File file) throws IOException {
+        super();
+        this.output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+    }
+
+    @Override
+    public void write(String className, String methodName, String desc, String signature)
+            throws IOException {
+        output.writeByte(1);
+        writeClassName(className);
+        output.writeUTF(methodName);
+        output.writeUTF(desc);
+        output.writeUTF(signature);
+        count++;
+    }
+
+    private void writeClassName(String className) throws IOException {
+        final Integer id = classIds.get(className);
+        if (id == null) {
+            classIds.put(className, classIds.size());
+            writeVarInt(0);
+            output.writeUTF(className.replace('/', '.'));
+        } else {
+            writeVarInt(id + 1);
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            output.writeByte(v & 0x7F | 0x80);
+            v >>>= 7;
+        }
+        output.writeByte(v);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            output.writeByte(0);
+            output.writeInt(count);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.jenkinsci.unusedcode;
+
+/**
+ * Call of a method found in bytecode, before resolution of polymorphism with the hierarchy.
+ */
+public final class CallSite {
+    private final String className;
+    private final String name;
+    private final String desc;
+
+    public CallSite(String className, String name, String desc) {
+        super();
+        this.className = className;
+        this.name = name;
+        this.desc = desc;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+
+    @Override
+    public int hashCode() {
+        return (className.hashCode() * 31 + name.hashCode()) * 31 + desc.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CallSite)) {
+            return false;
+        }
+        final CallSite other = (CallSite) obj;
+        return className.equals(other.className) && name.equals(other.name)
+                && desc.equals(other.desc);
+    }
+
+    @Override
+    public String toString() {
+        return Indexer.getMethodKey(className, name, desc);
+    }
+}
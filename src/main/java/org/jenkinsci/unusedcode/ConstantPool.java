@@ -0,0 +1,76 @@
+package org.jenkinsci.unusedcode;
+
+import java.nio.charset.StandardCharsets;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Reads the calls of a class from the method references of its constant pool, instead of
+ * visiting the instructions of all its methods: each invoked method has a CONSTANT_Methodref or
+ * a CONSTANT_InterfaceMethodref entry, so one scan of the pool finds the same calls without
+ * decoding any code. The pool also has the references of the method handles, such as the method
+ * references of java 8, which are calls too.
+ */
+final class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    // methods with these annotations are not called in code but are not unused code
+    private static final byte[][] CALLED_ANNOTATIONS = {
+            "Lhudson/init/Initializer;".getBytes(StandardCharsets.UTF_8),
+            "Lorg/kohsuke/stapler/DataBoundConstructor;".getBytes(StandardCharsets.UTF_8), };
+
+    private ConstantPool() {
+        super();
+    }
+
+    /**
+     * Calls {@link Analyzer#methodCalled(String, String, String)} for each method reference of
+     * the class.
+     * @return true if the pool has the descriptor of an annotation @Initializer or
+     *         @DataBoundConstructor, so the annotations of the methods must be visited too
+     */
+    static boolean readMethodRefs(ClassReader classReader, Analyzer analyzer) {
+        final byte[] b = classReader.b;
+        final char[] buffer = new char[classReader.getMaxStringLength()];
+        boolean calledAnnotation = false;
+        final int itemCount = classReader.getItemCount();
+        for (int i = 1; i < itemCount; i++) {
+            // the index after a long or a double is not used
+            final int offset = classReader.getItem(i);
+            if (offset == 0) {
+                continue;
+            }
+            final int tag = b[offset - 1];
+            if (tag == METHOD_REF || tag == INTERFACE_METHOD_REF) {
+                final String owner = classReader.readClass(offset, buffer);
+                final int nameAndType = classReader
+                        .getItem(classReader.readUnsignedShort(offset + 2));
+                analyzer.methodCalled(owner, classReader.readUTF8(nameAndType, buffer),
+                        classReader.readUTF8(nameAndType + 2, buffer));
+            } else if (tag == UTF8 && !calledAnnotation) {
+                calledAnnotation = isCalledAnnotation(b, offset);
+            }
+        }
+        return calledAnnotation;
+    }
+
+    private static boolean isCalledAnnotation(byte[] b, int offset) {
+        final int length = (b[offset] & 0xFF) << 8 | b[offset + 1] & 0xFF;
+        for (final byte[] annotation : CALLED_ANNOTATIONS) {
+            if (length == annotation.length && equals(b, offset + 2, annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equals(byte[] b, int offset, byte[] expected) {
+        for (int i = expected.length - 1; i >= 0; i--) {
+            if (b[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,252 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates a synthetic jenkins.war, plugins and the update-center.json which lists them, to run
+ * the analysis at any scale without network:
+ * "mvn compile exec:java -Dexec.mainClass=org.jenkinsci.unusedcode.CorpusGenerator
+ * -Dunusedcode.corpus.plugins=1000" then
+ * "mvn exec:java -Dunusedcode.updateCenterUrl=file:target/corpus/update-center.json".
+ * The corpus depends only on the parameters and on the seed.
+ */
+public final class CorpusGenerator {
+    private static final String CORE_PACKAGE = "jenkins/synthetic/";
+    private static final String PLUGIN_PACKAGE = "org/jenkinsci/plugins/synthetic";
+    private static final String METHOD_DESC = "(Ljava/lang/String;)I";
+
+    private final File directory;
+    private final Random random;
+    private final int coreClasses;
+    private final int hierarchyDepth;
+    private final int methodsPerClass;
+    private final int pluginClasses;
+    private final int callsPerMethod;
+    private final int libraryJars;
+    private final int sharedLibraryJars;
+    private final int jellyViews;
+
+    private CorpusGenerator(File directory) {
+        super();
+        this.directory = directory;
+        this.random = new Random(Long.getLong("unusedcode.corpus.seed", 42));
+        this.coreClasses = Integer.getInteger("unusedcode.corpus.coreClasses", 2000);
+        this.hierarchyDepth = Integer.getInteger("unusedcode.corpus.hierarchyDepth", 4);
+        this.methodsPerClass = Integer.getInteger("unusedcode.corpus.methodsPerClass", 10);
+        this.pluginClasses = Integer.getInteger("unusedcode.corpus.pluginClasses", 20);
+        // call density: number of calls to the core in each method of the plugins
+        this.callsPerMethod = Integer.getInteger("unusedcode.corpus.callsPerMethod", 2);
+        this.libraryJars = Integer.getInteger("unusedcode.corpus.libraryJars", 1);
+        // third-party jars bundled by all plugins, like guava or commons-* in real plugins
+        this.sharedLibraryJars = Integer.getInteger("unusedcode.corpus.sharedLibraryJars", 0);
+        this.jellyViews = Integer.getInteger("unusedcode.corpus.jellyViews", 5);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final File directory = new File(
+                System.getProperty("unusedcode.corpus.directory", "target/corpus"));
+        final int plugins = Integer.getInteger("unusedcode.corpus.plugins", 1000);
+        final long start = System.currentTimeMillis();
+        new CorpusGenerator(directory).generate(plugins);
+        System.out.println("Generated " + plugins + " plugins in " + directory.getPath() + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void generate(int plugins) throws IOException {
+        final File pluginsDirectory = new File(directory, "plugins");
+        pluginsDirectory.mkdirs();
+        final File coreFile = new File(directory, "jenkins.war");
+        generateCore(coreFile);
+        final byte[][] sharedLibraries = new byte[sharedLibraryJars][];
+        for (int j = 0; j < sharedLibraryJars; j++) {
+            sharedLibraries[j] = generateLibrary("org/synthetic/shared" + j + '/', 100, 0);
+        }
+        final Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(directory, "update-center.json")),
+                StandardCharsets.UTF_8);
+        try {
+            writer.write("updateCenter.post(\n{\"core\":");
+            writeFile(writer, "core", coreFile);
+            writer.write(",\n\"id\":\"synthetic\",\"plugins\":{");
+            for (int i = 0; i < plugins; i++) {
+                final String name = "synthetic-" + i;
+                final File pluginFile = new File(pluginsDirectory, name + ".hpi");
+                generatePlugin(pluginFile, i, sharedLibraries);
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write("\n\"" + name + "\":");
+                writeFile(writer, name, pluginFile);
+            }
+            writer.write("}}\n);\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeFile(Writer writer, String name, File file) throws IOException {
+        writer.write("{\"name\":\"" + name + "\",\"version\":\"1.0\",\"url\":\""
+                + file.getAbsoluteFile().toURI() + "\",\"wiki\":\"https://wiki.jenkins-ci.org/\"}");
+    }
+
+    private void generateCore(File file) throws IOException {
+        final ZipOutputStream war = openZip(file);
+        try {
+            final ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+            final ZipOutputStream coreJar = new ZipOutputStream(jarBytes);
+            try {
+                for (int i = 0; i < coreClasses; i++) {
+                    final String superName = i % hierarchyDepth == 0 ? "java/lang/Object"
+                            : getCoreClassName(i - 1);
+                    putEntry(coreJar, getCoreClassName(i) + ".class",
+                            generateClass(getCoreClassName(i), superName, i, 1));
+                }
+            } finally {
+                coreJar.close();
+            }
+            putEntry(war, "WEB-INF/lib/jenkins-core-1.0.jar", jarBytes.toByteArray());
+        } finally {
+            war.close();
+        }
+    }
+
+    private void generatePlugin(File file, int pluginIndex, byte[][] sharedLibraries)
+            throws IOException {
+        final String pluginPackage = PLUGIN_PACKAGE + pluginIndex + '/';
+        final ZipOutputStream hpi = openZip(file);
+        try {
+            final ByteArrayOutputStream jarBytes = new ByteArrayOutputStream();
+            final ZipOutputStream jar = new ZipOutputStream(jarBytes);
+            try {
+                for (int i = 0; i < pluginClasses; i++) {
+                    final String className = pluginPackage + "Class" + i;
+                    // plugin classes extend core classes or other plugin classes
+                    final String superName = i % hierarchyDepth == 0
+                            ? getCoreClassName(random.nextInt(coreClasses))
+                            : pluginPackage + "Class" + (i - 1);
+                    putEntry(jar, className + ".class",
+                            generateClass(className, superName, i, callsPerMethod));
+                    if (i < jellyViews) {
+                        putEntry(jar, className + "/index.jelly", generateJelly());
+                    }
+                }
+            } finally {
+                jar.close();
+            }
+            putEntry(hpi, "WEB-INF/lib/synthetic-" + pluginIndex + ".jar", jarBytes.toByteArray());
+            for (int j = 0; j < libraryJars; j++) {
+                putEntry(hpi, "WEB-INF/lib/library-" + j + ".jar",
+                        generateLibrary(pluginPackage + "lib" + j + '/', 3, 1));
+            }
+            for (int j = 0; j < sharedLibraries.length; j++) {
+                putEntry(hpi, "WEB-INF/lib/shared-library-" + j + ".jar", sharedLibraries[j]);
+            }
+        } finally {
+            hpi.close();
+        }
+    }
+
+    private byte[] generateLibrary(String libraryPackage, int classes, int calls)
+            throws IOException {
+        final ByteArrayOutputStream libraryBytes = new ByteArrayOutputStream();
+        final ZipOutputStream library = new ZipOutputStream(libraryBytes);
+        try {
+            for (int i = 0; i < classes; i++) {
+                final String className = libraryPackage + "Library" + i;
+                putEntry(library, className + ".class",
+                        generateClass(className, "java/lang/Object", i, calls));
+            }
+        } finally {
+            library.close();
+        }
+        return libraryBytes.toByteArray();
+    }
+
+    private static String getCoreClassName(int index) {
+        return CORE_PACKAGE + "Core" + index;
+    }
+
+    private static String getCoreMethodName(int classIndex, int methodIndex) {
+        return "compute" + classIndex + 'x' + methodIndex;
+    }
+
+    private byte[] generateClass(String className, String superName, int classIndex,
+            int calls) {
+        final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, className, null, superName, null);
+        final MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+        for (int i = 0; i < methodsPerClass; i++) {
+            final String methodName = className.startsWith(CORE_PACKAGE)
+                    ? getCoreMethodName(classIndex, i) : "run" + i;
+            final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, methodName,
+                    METHOD_DESC, null, null);
+            method.visitCode();
+            for (int j = 0; j < calls; j++) {
+                final int coreClass = random.nextInt(coreClasses);
+                method.visitTypeInsn(Opcodes.NEW, getCoreClassName(coreClass));
+                method.visitInsn(Opcodes.DUP);
+                method.visitMethodInsn(Opcodes.INVOKESPECIAL, getCoreClassName(coreClass),
+                        "<init>", "()V", false);
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, getCoreClassName(coreClass),
+                        getCoreMethodName(coreClass, random.nextInt(methodsPerClass)),
+                        METHOD_DESC, false);
+                method.visitInsn(Opcodes.POP);
+            }
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitInsn(Opcodes.IRETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private byte[] generateJelly() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("<?jelly escape-by-default='true'?>\n");
+        sb.append("<j:jelly xmlns:j=\"jelly:core\" xmlns:l=\"/lib/layout\">\n");
+        for (int i = 0; i < 3; i++) {
+            final int coreClass = random.nextInt(coreClasses);
+            sb.append("  <l:task href=\"${rootURL}/synthetic\" title=\"${it.")
+                    .append(getCoreMethodName(coreClass, random.nextInt(methodsPerClass)))
+                    .append("(app.displayName)}\"/>\n");
+        }
+        sb.append("</j:jelly>\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ZipOutputStream openZip(File file) throws IOException {
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+        return new ZipOutputStream(output);
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] bytes)
+            throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,57 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a csv file with a header line, and with the columns class, method, descriptor and
+ * signature (RFC 4180).
+ */
+class CsvReportWriter implements ReportWriter {
+    private final Writer writer;
+
+    CsvReportWriter(File file) throws IOException {
+        super();
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        writer.write("class,method,descriptor,signature\r\n");
+    }
+
+    @Override
+    public void write(String className, String methodName, String desc, String signature)
+            throws IOException {
+        writeField(className.replace('/', '.'));
+        writer.write(',');
+        writeField(methodName);
+        writer.write(',');
+        writeField(desc);
+        writer.write(',');
+        writeField(signature);
+        writer.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            final char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (quote) {
+            writer.write('"');
+            writer.write(field.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(field);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,204 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable form of the jenkins core {@link Hierarchy}, built once after indexing. Class names
+ * are interned to ids and the super-classes and transitive sub-classes of each class are stored
+ * in compressed int arrays (offsets by class id, then ids), so resolving a call is only array
+ * walks. It can be read by all the analyzer threads without lock.
+ */
+class FrozenHierarchy {
+    private final String[] classNames;
+    private final Map<String, Integer> classIdByName;
+    // for each class, ids of its super-classes and super-super-classes, without cycle
+    private final int[] superClassesStart;
+    private final int[] superClasses;
+    // for each class, ids of its sub-classes, sub-sub-classes and implementations, without cycle
+    private final int[] allSubClassesStart;
+    private final int[] allSubClasses;
+    private final boolean[] includedInPackages;
+    // for each class, ids of classes where a method called on this class may be defined
+    // (filtered by packages), computed on first use
+    private final AtomicReferenceArray<int[]> polymorphicClasses;
+
+    FrozenHierarchy(Map<String, String> superClassByClassMap,
+            Map<String, Set<String>> subClassListByClassMap, Hierarchy hierarchy) {
+        super();
+        final Set<String> names = new LinkedHashSet<>();
+        names.addAll(superClassByClassMap.keySet());
+        names.addAll(superClassByClassMap.values());
+        for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
+            names.add(entry.getKey());
+            names.addAll(entry.getValue());
+        }
+        final int count = names.size();
+        this.classNames = names.toArray(new String[count]);
+        this.classIdByName = new HashMap<>(count * 4 / 3 + 1);
+        for (int id = 0; id < count; id++) {
+            classIdByName.put(classNames[id], id);
+        }
+
+        final int[] superClassIds = new int[count];
+        Arrays.fill(superClassIds, -1);
+        for (final Map.Entry<String, String> entry : superClassByClassMap.entrySet()) {
+            superClassIds[classIdByName.get(entry.getKey())] = classIdByName
+                    .get(entry.getValue());
+        }
+        final int[] subClassesStart = new int[count + 1];
+        for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
+            subClassesStart[classIdByName.get(entry.getKey()) + 1] = entry.getValue().size();
+        }
+        for (int id = 0; id < count; id++) {
+            subClassesStart[id + 1] += subClassesStart[id];
+        }
+        final int[] subClasses = new int[subClassesStart[count]];
+        for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
+            int index = subClassesStart[classIdByName.get(entry.getKey())];
+            for (final String subClass : entry.getValue()) {
+                subClasses[index] = classIdByName.get(subClass);
+                index++;
+            }
+        }
+
+        // visited stamps, to handle the cycles (such as in org/bouncycastle/asn1)
+        final int[] visited = new int[count];
+        int stamp = 0;
+        final IntList list = new IntList();
+        this.superClassesStart = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            stamp++;
+            visited[id] = stamp;
+            int superClass = superClassIds[id];
+            while (superClass != -1 && visited[superClass] != stamp) {
+                visited[superClass] = stamp;
+                list.add(superClass);
+                final int next = superClassIds[superClass];
+                // like the walk of Hierarchy, stop before the other class of a cycle of two
+                if (next != -1 && superClassIds[next] == superClass) {
+                    break;
+                }
+                superClass = next;
+            }
+            superClassesStart[id + 1] = list.size();
+        }
+        this.superClasses = list.toArray();
+
+        list.clear();
+        final IntList queue = new IntList();
+        this.allSubClassesStart = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            stamp++;
+            queue.clear();
+            queue.add(id);
+            // breadth-first, the class itself is included only if it is in a cycle
+            for (int i = 0; i < queue.size(); i++) {
+                final int classId = queue.get(i);
+                for (int j = subClassesStart[classId]; j < subClassesStart[classId + 1]; j++) {
+                    final int subClass = subClasses[j];
+                    if (visited[subClass] != stamp) {
+                        visited[subClass] = stamp;
+                        list.add(subClass);
+                        queue.add(subClass);
+                    }
+                }
+            }
+            allSubClassesStart[id + 1] = list.size();
+        }
+        this.allSubClasses = list.toArray();
+
+        this.includedInPackages = new boolean[count];
+        for (int id = 0; id < count; id++) {
+            includedInPackages[id] = hierarchy.isClassIncludedInPackages(classNames[id]);
+        }
+        this.polymorphicClasses = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * @return methods which may be called by this call site, or null if the class is not in this
+     *         hierarchy
+     */
+    Set<String> getPolymorphicMethods(String className, String name, String desc) {
+        final Integer classId = classIdByName.get(className);
+        if (classId == null) {
+            return null;
+        }
+        int[] classIds = polymorphicClasses.get(classId);
+        if (classIds == null) {
+            // several threads may compute the same result, which is harmless
+            classIds = computePolymorphicClasses(classId);
+            polymorphicClasses.set(classId, classIds);
+        }
+        final Set<String> polymorphicMethods = new HashSet<>(classIds.length * 4 / 3 + 1);
+        for (final int id : classIds) {
+            polymorphicMethods.add(Indexer.getMethodKey(classNames[id], name, desc));
+        }
+        return polymorphicMethods;
+    }
+
+    private int[] computePolymorphicClasses(int classId) {
+        final IntList list = new IntList();
+        final Set<Integer> added = new HashSet<>();
+        // method directly on class
+        addIfIncluded(classId, list, added);
+        // super-classes and super-super-classes
+        for (int i = superClassesStart[classId]; i < superClassesStart[classId + 1]; i++) {
+            addIfIncluded(superClasses[i], list, added);
+        }
+        // sub-classes and sub-sub-classes
+        for (int i = allSubClassesStart[classId]; i < allSubClassesStart[classId + 1]; i++) {
+            final int subClass = allSubClasses[i];
+            addIfIncluded(subClass, list, added);
+            // sometimes a method of a super-class is called via an interface of a sub-class
+            for (int j = superClassesStart[subClass]; j < superClassesStart[subClass + 1]
+                    && superClasses[j] != classId; j++) {
+                addIfIncluded(superClasses[j], list, added);
+            }
+        }
+        return list.toArray();
+    }
+
+    private void addIfIncluded(int classId, IntList list, Set<Integer> added) {
+        if (includedInPackages[classId] && added.add(classId)) {
+            list.add(classId);
+        }
+    }
+
+    /**
+     * Growable array of int.
+     */
+    private static class IntList {
+        private int[] array = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size] = value;
+            size++;
+        }
+
+        int get(int index) {
+            return array[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(array, size);
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package org.jenkinsci.unusedcode;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.objectweb.asm.ClassReader;
 
 public class Hierarchy {
+    // maximum number of call sites in the cache of polymorphic methods
+    private static final int MAX_CACHE_SIZE = 500000;
+
     private final Hierarchy superHierarchy;
     private final Map<String, String> superClassByClassMap = new HashMap<>();
     private final Map<String, Set<String>> subClassListByClassMap = new HashMap<>();
-    private final List<String> packages = new ArrayList<>();
+    // prefixes of the packages of the indexed classes
+    private final PackageTrie packages = new PackageTrie();
+    private PackageTrie includedPackages = new PackageTrie();
+    private PackageTrie excludedPackages = new PackageTrie();
+    // cache of polymorphic methods by call site, used only for jenkins core hierarchy
+    // (that is when superHierarchy == null) since it is not modified after indexing
+    // and since the same call sites are resolved again and again for each plugin
+    private final ConcurrentMap<String, Set<String>> polymorphicMethodsCache =
+            new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    // immutable form of the jenkins core hierarchy, null until freeze()
+    private volatile FrozenHierarchy frozenHierarchy;
 
     public Hierarchy() {
         this(null);
@@ -28,31 +44,58 @@ public class Hierarchy {
 
     public void registerPackage(ClassReader classReader) {
         final String asmClassName = classReader.getClassName();
-        for (final String packageName : packages) {
-            if (asmClassName.startsWith(packageName)) {
-                return;
-            }
+        if (packages.matchesPrefixOf(asmClassName)) {
+            return;
         }
+        frozenHierarchy = null;
+        polymorphicMethodsCache.clear();
         final String newPackageName = asmClassName.substring(0, asmClassName.lastIndexOf('/'));
-        final Iterator<String> iterator = packages.iterator();
-        while (iterator.hasNext()) {
-            final String packageName = iterator.next();
-            if (packageName.startsWith(newPackageName)) {
-                iterator.remove();
-            }
+        packages.addAndRemoveLongerPrefixes(newPackageName);
+    }
+
+    /**
+     * Restricts the analysis to some packages, for example "hudson/model" or "jenkins.model",
+     * including their sub-packages.
+     * @param includedPackages packages to include, or empty to include all packages
+     * @param excludedPackages packages to exclude from the included packages
+     */
+    public void setPackageFilters(Collection<String> includedPackages,
+            Collection<String> excludedPackages) {
+        frozenHierarchy = null;
+        polymorphicMethodsCache.clear();
+        this.includedPackages = toPackageTrie(includedPackages);
+        this.excludedPackages = toPackageTrie(excludedPackages);
+    }
+
+    private static PackageTrie toPackageTrie(Collection<String> packageNames) {
+        final PackageTrie packageTrie = new PackageTrie();
+        for (final String packageName : packageNames) {
+            // "hudson/model" must not include "hudson/modelx"
+            packageTrie.add(packageName.replace('.', '/') + '/');
         }
-        packages.add(newPackageName);
+        return packageTrie;
+    }
+
+    public boolean isClassInPackageFilters(String className) {
+        return (includedPackages.isEmpty() || includedPackages.matchesPrefixOf(className))
+                && !excludedPackages.matchesPrefixOf(className);
     }
 
     public void registerHierarchyOfClass(ClassReader classReader) {
-        final String asmClassName = classReader.getClassName();
-        final String asmSuperClassName = classReader.getSuperName();
+        registerHierarchyOfClass(classReader.getClassName(), classReader.getSuperName(),
+                classReader.getInterfaces());
+    }
+
+    public void registerHierarchyOfClass(String asmClassName, String asmSuperClassName,
+            String[] asmInterfaceNames) {
+        frozenHierarchy = null;
+        polymorphicMethodsCache.clear();
         if (!JavaHelper.isJavaClass(asmSuperClassName)) {
             // java and javax classes are not analyzed
             registerSuperClass(asmSuperClassName, asmClassName);
             registerSubClass(asmSuperClassName, asmClassName);
         }
-        for (final String asmInterfaceName : classReader.getInterfaces()) {
+        for (final String asmInterfaceName : asmInterfaceNames) {
             if (!JavaHelper.isJavaClass(asmInterfaceName)) {
                 registerSubClass(asmInterfaceName, asmClassName);
             }
@@ -95,7 +138,82 @@ public class Hierarchy {
         return allSubClasses;
     }
 
+    /**
+     * @return methods which may be called by this call site, the set must not be modified
+     */
     public Set<String> getPolymorphicMethods(String className, String name, String desc) {
+        if (superHierarchy != null) {
+            return resolvePolymorphicMethods(className, name, desc);
+        }
+        final String callSite = Indexer.getMethodKey(className, name, desc);
+        Set<String> polymorphicMethods = polymorphicMethodsCache.get(callSite);
+        if (polymorphicMethods != null) {
+            cacheHits.incrementAndGet();
+            return polymorphicMethods;
+        }
+        cacheMisses.incrementAndGet();
+        polymorphicMethods = Collections
+                .unmodifiableSet(resolvePolymorphicMethods(className, name, desc));
+        if (polymorphicMethodsCache.size() < MAX_CACHE_SIZE) {
+            // when the cache is full, the call sites already cached are kept
+            polymorphicMethodsCache.putIfAbsent(callSite, polymorphicMethods);
+        }
+        return polymorphicMethods;
+    }
+
+    /**
+     * Builds the immutable form of this hierarchy, used to resolve calls until a class or a
+     * package is registered again. This is done for jenkins core hierarchy after indexing.
+     */
+    public void freeze() {
+        frozenHierarchy = new FrozenHierarchy(superClassByClassMap, subClassListByClassMap, this);
+        polymorphicMethodsCache.clear();
+    }
+
+    /**
+     * @return content of this hierarchy, for a snapshot of the index of jenkins core
+     */
+    IndexSnapshot toSnapshot(String[] methods, int classCount) {
+        return new IndexSnapshot(methods, superClassByClassMap, subClassListByClassMap,
+                packages.getPrefixes(), classCount);
+    }
+
+    /**
+     * Registers the classes and the packages of a snapshot of the index of jenkins core.
+     */
+    void registerSnapshot(IndexSnapshot snapshot) {
+        frozenHierarchy = null;
+        polymorphicMethodsCache.clear();
+        superClassByClassMap.putAll(snapshot.superClassByClassMap);
+        subClassListByClassMap.putAll(snapshot.subClassListByClassMap);
+        for (final String packageName : snapshot.packages) {
+            packages.addAndRemoveLongerPrefixes(packageName);
+        }
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    private Set<String> resolvePolymorphicMethods(String className, String name, String desc) {
+        final FrozenHierarchy frozen = frozenHierarchy;
+        if (frozen != null) {
+            final Set<String> polymorphicMethods = frozen.getPolymorphicMethods(className, name,
+                    desc);
+            if (polymorphicMethods != null) {
+                return polymorphicMethods;
+            }
+            // class without super-class or sub-class
+            final Set<String> methods = new HashSet<>(1);
+            if (isClassIncludedInPackages(className)) {
+                methods.add(Indexer.getMethodKey(className, name, desc));
+            }
+            return methods;
+        }
         final Set<String> polymorphicMethods = new HashSet<>(1);
         // method directly on class
         addSuperMethodsOrItself(className, name, desc, polymorphicMethods);
@@ -139,16 +257,22 @@ public class Hierarchy {
         }
     }
 
-    private boolean isClassIncludedInPackages(String className) {
+    /**
+     * @return false if the class is not in this hierarchy nor in its super hierarchy, and so
+     *         a call on this class can not resolve to any method
+     */
+    boolean isKnownClass(String className) {
+        if (superClassByClassMap.containsKey(className)
+                || subClassListByClassMap.containsKey(className)) {
+            return true;
+        }
+        return superHierarchy != null ? superHierarchy.isKnownClass(className)
+                : packages.matchesPrefixOf(className);
+    }
+
+    boolean isClassIncludedInPackages(String className) {
         // this method is called and packages is not empty only for jenkins core hierarchy
         // (that is when superHierarchy == null)
-        if (!packages.isEmpty()) {
-            for (final String packageName : packages) {
-                if (className.startsWith(packageName)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return packages.matchesPrefixOf(className) && isClassInPackageFilters(className);
     }
 }
@@ -1,6 +1,9 @@
 package org.jenkinsci.unusedcode;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -8,6 +11,9 @@ import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
 
 public class HttpGet {
     /** Timeout to connect in ms. */
@@ -18,6 +24,9 @@ public class HttpGet {
      */
     private static final int READ_TIMEOUT = 300000;
 
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+
     private final URL url;
 
     public HttpGet(URL url) {
@@ -26,6 +35,70 @@ public class HttpGet {
     }
 
     public void copy(OutputStream output) throws IOException {
+        copy(openConnection(), output);
+    }
+
+    /**
+     * Copies the content to the file, only if it was modified since the last copy. The ETag and
+     * the Last-Modified of the content are saved next to the file, to revalidate it with
+     * If-None-Match and If-Modified-Since.
+     * @return true if the file was written, false if it was not modified
+     */
+    public boolean copyIfModified(File file) throws IOException {
+        final File validatorsFile = new File(file.getPath() + ".validators");
+        final Properties validators = new Properties();
+        final URLConnection connection = openConnection();
+        if (file.exists() && validatorsFile.exists()) {
+            final InputStream input = new FileInputStream(validatorsFile);
+            try {
+                validators.load(input);
+            } finally {
+                input.close();
+            }
+            if (validators.getProperty(ETAG) != null) {
+                connection.setRequestProperty("If-None-Match", validators.getProperty(ETAG));
+            }
+            if (validators.getProperty(LAST_MODIFIED) != null) {
+                connection.setRequestProperty("If-Modified-Since",
+                        validators.getProperty(LAST_MODIFIED));
+            }
+        }
+        if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection)
+                .getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) connection).disconnect();
+            return false;
+        }
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            final OutputStream output = new FileOutputStream(tempFile);
+            try {
+                copy(connection, output);
+            } finally {
+                output.close();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // if the copy failed
+            tempFile.delete();
+        }
+
+        validators.clear();
+        if (connection.getHeaderField("ETag") != null) {
+            validators.setProperty(ETAG, connection.getHeaderField("ETag"));
+        }
+        if (connection.getHeaderField("Last-Modified") != null) {
+            validators.setProperty(LAST_MODIFIED, connection.getHeaderField("Last-Modified"));
+        }
+        final OutputStream validatorsOutput = new FileOutputStream(validatorsFile);
+        try {
+            validators.store(validatorsOutput, url.toString());
+        } finally {
+            validatorsOutput.close();
+        }
+        return true;
+    }
+
+    private URLConnection openConnection() throws IOException {
         final URLConnection connection = url.openConnection();
         if (CONNECTION_TIMEOUT > 0) {
             connection.setConnectTimeout(CONNECTION_TIMEOUT);
@@ -33,6 +106,10 @@ public class HttpGet {
         if (READ_TIMEOUT > 0) {
             connection.setReadTimeout(READ_TIMEOUT);
         }
+        return connection;
+    }
+
+    private static void copy(URLConnection connection, OutputStream output) throws IOException {
         try {
             final InputStream input = connection.getInputStream();
             try {
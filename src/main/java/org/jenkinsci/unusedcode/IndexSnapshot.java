@@ -0,0 +1,207 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of jenkins core (its methods, its hierarchy and its packages), written next to the core
+ * war after indexing. The next runs read it instead of parsing jenkins-core again, if the key
+ * (checksum of the war, package filters and java version) is the same. Reading still decodes the
+ * strings and fills the maps of the hierarchy, but it does not inflate nor parse any class.
+ */
+final class IndexSnapshot {
+    private static final int MAGIC = 0x55434958;
+    // to increment when what is in the snapshot or how the index is built changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String EXTENSION = ".index";
+
+    final String[] methods;
+    final Map<String, String> superClassByClassMap;
+    final Map<String, Set<String>> subClassListByClassMap;
+    final List<String> packages;
+    final int classCount;
+
+    IndexSnapshot(String[] methods, Map<String, String> superClassByClassMap,
+            Map<String, Set<String>> subClassListByClassMap, List<String> packages,
+            int classCount) {
+        super();
+        this.methods = methods;
+        this.superClassByClassMap = superClassByClassMap;
+        this.subClassListByClassMap = subClassListByClassMap;
+        this.packages = packages;
+        this.classCount = classCount;
+    }
+
+    static File getSnapshotFile(File coreWarFile) {
+        return new File(coreWarFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * @return the snapshot in the file, or null if the file does not exist or if it was written
+     *         for another key or by another version
+     */
+    static IndexSnapshot read(File snapshotFile, String key) throws IOException {
+        final MappedByteBuffer buffer;
+        try {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "r");
+            try {
+                final FileChannel channel = randomAccessFile.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (final FileNotFoundException e) {
+            return null;
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !key.equals(readString(buffer))) {
+                return null;
+            }
+            final int classCount = buffer.getInt();
+            final String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            final String[] methods = new String[buffer.getInt()];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = strings[buffer.getInt()];
+            }
+            final int superClassCount = buffer.getInt();
+            final Map<String, String> superClassByClassMap = new HashMap<>(
+                    superClassCount * 4 / 3 + 1);
+            for (int i = 0; i < superClassCount; i++) {
+                final String className = strings[buffer.getInt()];
+                final int superClassId = buffer.getInt();
+                superClassByClassMap.put(className,
+                        superClassId >= 0 ? strings[superClassId] : null);
+            }
+            final int subClassListCount = buffer.getInt();
+            final Map<String, Set<String>> subClassListByClassMap = new HashMap<>(
+                    subClassListCount * 4 / 3 + 1);
+            for (int i = 0; i < subClassListCount; i++) {
+                final String className = strings[buffer.getInt()];
+                final int subClassCount = buffer.getInt();
+                final Set<String> subClasses = new HashSet<>(subClassCount * 4 / 3 + 1);
+                for (int j = 0; j < subClassCount; j++) {
+                    subClasses.add(strings[buffer.getInt()]);
+                }
+                subClassListByClassMap.put(className, subClasses);
+            }
+            final List<String> packages = new ArrayList<>();
+            final int packageCount = buffer.getInt();
+            for (int i = 0; i < packageCount; i++) {
+                packages.add(strings[buffer.getInt()]);
+            }
+            return new IndexSnapshot(methods, superClassByClassMap, subClassListByClassMap,
+                    packages, classCount);
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("invalid " + snapshotFile.getName(), e);
+        } finally {
+            // everything was copied, and the file is replaced when it is written again
+            ZipArchive.unmap(buffer);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the snapshot to the file, which is replaced only when it is complete.
+     */
+    void write(File snapshotFile, String key) throws IOException {
+        final Map<String, Integer> stringIds = new LinkedHashMap<>();
+        addStrings(stringIds, Arrays.asList(methods));
+        for (final Map.Entry<String, String> entry : superClassByClassMap.entrySet()) {
+            addStrings(stringIds, Arrays.asList(entry.getKey(), entry.getValue()));
+        }
+        for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
+            addStrings(stringIds, Arrays.asList(entry.getKey()));
+            addStrings(stringIds, entry.getValue());
+        }
+        addStrings(stringIds, packages);
+
+        final File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            writeString(output, key);
+            output.writeInt(classCount);
+            output.writeInt(stringIds.size());
+            for (final String string : stringIds.keySet()) {
+                writeString(output, string);
+            }
+            writeStrings(output, stringIds, Arrays.asList(methods));
+            output.writeInt(superClassByClassMap.size());
+            for (final Map.Entry<String, String> entry : superClassByClassMap.entrySet()) {
+                output.writeInt(stringIds.get(entry.getKey()));
+                // the super class name is null for module-info
+                output.writeInt(entry.getValue() != null ? stringIds.get(entry.getValue()) : -1);
+            }
+            output.writeInt(subClassListByClassMap.size());
+            for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
+                output.writeInt(stringIds.get(entry.getKey()));
+                writeStrings(output, stringIds, entry.getValue());
+            }
+            writeStrings(output, stringIds, packages);
+        } finally {
+            output.close();
+        }
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void addStrings(Map<String, Integer> stringIds, Collection<String> strings) {
+        for (final String string : strings) {
+            if (string != null && !stringIds.containsKey(string)) {
+                stringIds.put(string, stringIds.size());
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream output, Map<String, Integer> stringIds,
+            Collection<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (final String string : strings) {
+            output.writeInt(stringIds.get(string));
+        }
+    }
+}
@@ -4,15 +4,25 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -40,32 +50,142 @@ public class Indexer {
     // // "jenkins/util/groovy/AbstractGroovyViewModule"
     // )));
 
-    private final Set<String> methods = new LinkedHashSet<>();
-    private final Set<String> synchronizedMethods = Collections.synchronizedSet(methods);
-    private final Hierarchy hierarchy = new Hierarchy();
+    // maximum number of classes read and not yet registered, to bound memory
+    private static final int MAX_PENDING_CLASSES = 1000;
 
-    public static byte[] readJenkinsCoreFile(File coreWarFile) throws ZipException, IOException {
-        final ZipFile zipFile = new ZipFile(coreWarFile);
+    // for example: -Dunusedcode.coreIndexSnapshot=false to parse jenkins-core in each run
+    private static final boolean CORE_INDEX_SNAPSHOT = Boolean
+            .parseBoolean(System.getProperty("unusedcode.coreIndexSnapshot", "true"));
+
+    // methods are added by indexJar, then frozen into ids to be shared by the analyzer threads
+    private Set<String> methods = new LinkedHashSet<>();
+    private Hierarchy hierarchy = new Hierarchy();
+    // super class and interfaces of the classes of the jar being indexed
+    private final Map<String, String[]> supertypesByClass = new HashMap<>();
+    // methods and hierarchy of each core version, in the order of indexing
+    private final List<Set<String>> versionMethods = new ArrayList<>();
+    private final List<Hierarchy> versionHierarchies = new ArrayList<>();
+    // ids of the methods of all versions
+    private String[] methodsById = new String[0];
+    private Map<String, Integer> methodIdByKey = Collections.emptyMap();
+    // for each method id, the bit i is set if the method is in the core version i
+    private int[] versionMasks = new int[0];
+    // for each core version, ids of the methods of this version not called yet
+    private AtomicBitSet[] unusedMethods = { new AtomicBitSet(0) };
+    private JellyIndex jellyIndex = new JellyIndex(methodsById);
+    private int indexedClassCount;
+    private Collection<String> includedPackages = Collections.emptyList();
+    private Collection<String> excludedPackages = Collections.emptyList();
+
+    /**
+     * Indexes the jenkins-core jar of a jenkins war, or reads the snapshot of the index written
+     * by a previous run for the same war and the same package filters.
+     */
+    public void indexJenkinsCore(File coreWarFile) throws IOException {
+        indexJenkinsCores(Collections.singletonList(coreWarFile));
+    }
+
+    /**
+     * Indexes several core versions, for example the last LTS and the last weekly. The methods
+     * of all versions share the same ids, and the unused methods are known for each version.
+     */
+    public void indexJenkinsCores(List<File> coreWarFiles) throws IOException {
+        if (versionHierarchies.size() + coreWarFiles.size() > Integer.SIZE) {
+            throw new IllegalArgumentException("too many core versions: " + coreWarFiles.size());
+        }
+        // the buffer to inflate the jenkins-core jar is reused for the next versions
+        final ZipArchive.BufferHolder bufferHolder = new ZipArchive.BufferHolder();
+        for (final File coreWarFile : coreWarFiles) {
+            if (!versionHierarchies.isEmpty()) {
+                hierarchy = new Hierarchy();
+                hierarchy.setPackageFilters(includedPackages, excludedPackages);
+                methods = new LinkedHashSet<>();
+            }
+            indexJenkinsCoreVersion(coreWarFile, bufferHolder);
+            versionHierarchies.add(hierarchy);
+            versionMethods.add(methods);
+        }
+        freezeMethods();
+    }
+
+    private void indexJenkinsCoreVersion(File coreWarFile, ZipArchive.BufferHolder bufferHolder)
+            throws IOException {
+        if (!CORE_INDEX_SNAPSHOT) {
+            indexJenkinsCoreJar(coreWarFile, bufferHolder);
+            return;
+        }
+        // the index depends on the package filters, and on the jdk for the methods of java
+        // classes excluded by JavaHelper
+        final String key = AnalysisSummary.hash(coreWarFile) + ' ' + includedPackages + ' '
+                + excludedPackages + ' ' + System.getProperty("java.specification.version");
+        final File snapshotFile = IndexSnapshot.getSnapshotFile(coreWarFile);
+        IndexSnapshot snapshot;
+        try {
+            snapshot = IndexSnapshot.read(snapshotFile, key);
+        } catch (final IOException e) {
+            // the snapshot will be written again
+            Log.log("ignoring " + snapshotFile.getName() + ", because " + e.toString());
+            snapshot = null;
+        }
+        if (snapshot != null) {
+            hierarchy.registerSnapshot(snapshot);
+            methods.addAll(Arrays.asList(snapshot.methods));
+            indexedClassCount += snapshot.classCount;
+            return;
+        }
+        final int previousClassCount = indexedClassCount;
+        indexJenkinsCoreJar(coreWarFile, bufferHolder);
+        try {
+            hierarchy.toSnapshot(methods.toArray(new String[methods.size()]),
+                    indexedClassCount - previousClassCount).write(snapshotFile, key);
+        } catch (final IOException e) {
+            Log.log("unable to write " + snapshotFile.getName() + ", because " + e.toString());
+        }
+    }
+
+    /**
+     * Indexes the jenkins-core jar of a jenkins war, read in place in the memory-mapped war.
+     */
+    private void indexJenkinsCoreJar(File coreWarFile, ZipArchive.BufferHolder bufferHolder)
+            throws IOException {
+        final JfrEvent event = JfrEvent.begin(JfrEvent.Type.INDEXING);
+        final int previousClassCount = indexedClassCount;
+        final ZipArchive warArchive = ZipArchive.map(coreWarFile);
+        final Inflater inflater = new Inflater(true);
         try {
-            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                final ZipEntry entry = entries.nextElement();
-                final String fileName = entry.getName();
+            final byte[] chunk = new byte[16 * 1024];
+            for (int i = 0; i < warArchive.size(); i++) {
+                final String fileName = warArchive.getName(i);
                 if (fileName.startsWith("WEB-INF/lib/jenkins-core") && fileName.endsWith(".jar")) {
-                    final InputStream input = zipFile.getInputStream(entry);
-                    final ByteArrayOutputStream output = new ByteArrayOutputStream(
-                            (int) entry.getSize());
-                    final byte[] buffer = new byte[50 * 1024];
-                    int len = input.read(buffer);
-                    while (len != -1) {
-                        output.write(buffer, 0, len);
-                        len = input.read(buffer);
+                    if (!warArchive.isStored(i)) {
+                        Metrics.addBytesInflated(warArchive.getSize(i));
+                    }
+                    final ZipArchive jarArchive = warArchive.openNested(i, inflater, chunk,
+                            bufferHolder);
+                    final ParallelIndexing parallelIndexing = new ParallelIndexing();
+                    try {
+                        for (int j = 0; j < jarArchive.size(); j++) {
+                            if (jarArchive.getName(j).endsWith(".class")) {
+                                if (!jarArchive.isStored(j)) {
+                                    Metrics.addBytesInflated(jarArchive.getSize(j));
+                                }
+                                parallelIndexing
+                                        .submit(jarArchive.getInputStream(j, inflater, chunk));
+                            }
+                        }
+                        parallelIndexing.finish();
+                    } finally {
+                        parallelIndexing.close();
                     }
-                    return output.toByteArray();
+                    excludeJavaMethods();
+                    event.commit(fileName, null, warArchive.getSize(i),
+                            indexedClassCount - previousClassCount, 0);
+                    return;
                 }
             }
         } finally {
-            zipFile.close();
+            inflater.end();
+            warArchive.close();
         }
         throw new IllegalArgumentException("jenkins-core file not found");
     }
@@ -75,38 +195,237 @@ public class Indexer {
     }
 
     public void indexJar(InputStream input) throws IOException {
+        final JfrEvent event = JfrEvent.begin(JfrEvent.Type.INDEXING);
+        final int previousClassCount = indexedClassCount;
         final JarReader jarReader = new JarReader(input);
+        final ParallelIndexing parallelIndexing = new ParallelIndexing();
         try {
             String fileName = jarReader.nextClass();
             while (fileName != null) {
-                indexClass(jarReader.getInputStream());
+                parallelIndexing.submit(jarReader.getInputStream());
                 fileName = jarReader.nextClass();
             }
+            parallelIndexing.finish();
         } finally {
+            parallelIndexing.close();
             jarReader.close();
         }
+        excludeJavaMethods();
+        freezeMethods();
+        event.commit("jar", null, 0, indexedClassCount - previousClassCount, 0);
+    }
+
+    private void freezeMethods() {
+        if (versionHierarchies.isEmpty()) {
+            // indexJar indexes one version
+            versionHierarchies.add(hierarchy);
+            versionMethods.add(methods);
+        }
+        final Set<String> allMethods = new HashSet<>(methods.size() * 4 / 3 + 1);
+        for (int version = 0; version < versionHierarchies.size(); version++) {
+            versionHierarchies.get(version).freeze();
+            allMethods.addAll(versionMethods.get(version));
+        }
+        methodsById = allMethods.toArray(new String[allMethods.size()]);
+        // ids in the order of the methods, so the reports are sorted by iterating over the ids
+        Arrays.sort(methodsById);
+        final Map<String, Integer> map = new HashMap<>(methodsById.length * 4 / 3 + 1);
+        for (int id = 0; id < methodsById.length; id++) {
+            map.put(methodsById[id], id);
+        }
+        methodIdByKey = map;
+        versionMasks = new int[methodsById.length];
+        unusedMethods = new AtomicBitSet[versionMethods.size()];
+        for (int version = 0; version < unusedMethods.length; version++) {
+            // all methods of the version are unused until a call is found
+            unusedMethods[version] = new AtomicBitSet(methodsById.length);
+            for (final String method : versionMethods.get(version)) {
+                final int id = map.get(method);
+                versionMasks[id] |= 1 << version;
+                unusedMethods[version].set(id);
+            }
+        }
+        jellyIndex = new JellyIndex(methodsById);
+    }
+
+    /**
+     * @return id of the method, or -1 if the method is not indexed
+     */
+    public int getMethodId(String methodKey) {
+        final Integer id = methodIdByKey.get(methodKey);
+        if (id == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    public String getMethod(int methodId) {
+        return methodsById[methodId];
+    }
+
+    public int getMethodCount() {
+        return methodsById.length;
     }
 
-    public Set<String> getMethods() {
-        return synchronizedMethods;
+    /**
+     * @return number of core versions indexed
+     */
+    public int getVersionCount() {
+        return unusedMethods.length;
+    }
+
+    /**
+     * @return bit mask of the core versions having this method: the bit i for the version i
+     */
+    public int getVersionMask(int methodId) {
+        return versionMasks[methodId];
     }
 
+    /**
+     * @return ids of the methods not called yet in the first core version, cleared by the
+     *         analyzer threads
+     */
+    public AtomicBitSet getUnusedMethods() {
+        return unusedMethods[0];
+    }
+
+    /**
+     * @return ids of the methods of a core version not called yet, cleared by the analyzer
+     *         threads
+     */
+    public AtomicBitSet getUnusedMethods(int version) {
+        return unusedMethods[version];
+    }
+
+    public JellyIndex getJellyIndex() {
+        return jellyIndex;
+    }
+
+    /**
+     * Restricts the indexed methods and the analysis to some packages, before indexing.
+     * @see Hierarchy#setPackageFilters(Collection, Collection)
+     */
+    public void setPackageFilters(Collection<String> includedPackages,
+            Collection<String> excludedPackages) {
+        hierarchy.setPackageFilters(includedPackages, excludedPackages);
+        this.includedPackages = includedPackages;
+        this.excludedPackages = excludedPackages;
+    }
+
+    /**
+     * @return hierarchy of the first core version
+     */
     public Hierarchy getHierarchy() {
-        return hierarchy;
+        return versionHierarchies.isEmpty() ? hierarchy : versionHierarchies.get(0);
     }
 
-    private void indexClass(InputStream input) throws IOException {
-        final ClassReader classReader = new ClassReader(input);
-        hierarchy.registerHierarchyOfClass(classReader);
-        hierarchy.registerPackage(classReader);
-        if (IGNORED_CLASSES.contains(classReader.getClassName())) {
-            return;
+    public Hierarchy getHierarchy(int version) {
+        return versionHierarchies.get(version);
+    }
+
+    // thread-safe, since the package filters are not modified during indexing
+    private IndexedClass parseClass(byte[] bytes) {
+        final ClassReader classReader = new ClassReader(bytes);
+        if (IGNORED_CLASSES.contains(classReader.getClassName())
+                || !hierarchy.isClassInPackageFilters(classReader.getClassName())) {
+            return new IndexedClass(classReader, Collections.<String> emptySet());
         }
         final CalledClassVisitor calledClassVisitor = new CalledClassVisitor();
         classReader.accept(calledClassVisitor,
                 ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-        methods.addAll(calledClassVisitor.getMethods());
-        JavaHelper.excludeJavaMethods(classReader, methods);
+        return new IndexedClass(classReader, calledClassVisitor.getMethods());
+    }
+
+    private void registerClass(IndexedClass indexedClass) {
+        Metrics.addClassesParsed(1);
+        indexedClassCount++;
+        hierarchy.registerHierarchyOfClass(indexedClass.classReader);
+        hierarchy.registerPackage(indexedClass.classReader);
+        methods.addAll(indexedClass.methods);
+        final String[] interfaceNames = indexedClass.classReader.getInterfaces();
+        final String[] supertypes = new String[interfaceNames.length + 1];
+        supertypes[0] = indexedClass.classReader.getSuperName();
+        System.arraycopy(interfaceNames, 0, supertypes, 1, interfaceNames.length);
+        supertypesByClass.put(indexedClass.classReader.getClassName(), supertypes);
+    }
+
+    // once all the classes of the jar are registered, since a method can override a java method
+    // through other core classes
+    private void excludeJavaMethods() {
+        JavaHelper.excludeJavaMethods(methods, supertypesByClass);
+        supertypesByClass.clear();
+    }
+
+    private static class IndexedClass {
+        final ClassReader classReader;
+        final Set<String> methods;
+
+        IndexedClass(ClassReader classReader, Set<String> methods) {
+            super();
+            this.classReader = classReader;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * Parses the classes in parallel, but registers them in the order of submission
+     * in the calling thread, so that the hierarchy and the method ids do not depend on threads.
+     */
+    private final class ParallelIndexing {
+        private final ExecutorService executorService = Executors
+                .newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        private final Queue<Future<IndexedClass>> futures = new ArrayDeque<>();
+
+        ParallelIndexing() {
+            super();
+        }
+
+        void submit(InputStream input) throws IOException {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(8 * 1024);
+            final byte[] buffer = new byte[8 * 1024];
+            int len = input.read(buffer);
+            while (len != -1) {
+                output.write(buffer, 0, len);
+                len = input.read(buffer);
+            }
+            final byte[] bytes = output.toByteArray();
+            futures.add(executorService.submit(new Callable<IndexedClass>() {
+                @Override
+                public IndexedClass call() {
+                    return parseClass(bytes);
+                }
+            }));
+            if (futures.size() > MAX_PENDING_CLASSES) {
+                registerClass(getResult(futures.poll()));
+            }
+        }
+
+        void finish() throws IOException {
+            while (!futures.isEmpty()) {
+                registerClass(getResult(futures.poll()));
+            }
+        }
+
+        void close() {
+            executorService.shutdownNow();
+        }
+
+        private IndexedClass getResult(Future<IndexedClass> future) throws IOException {
+            try {
+                return future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.toString());
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
     }
 
     /**
@@ -20,9 +20,9 @@ public class JarReader implements Closeable {
         return nextEntry(".class");
     }
 
-    String nextEntry(String extension) throws IOException {
+    String nextEntry(String... extensions) throws IOException {
         entry = zipInputStream.getNextEntry();
-        while (entry != null && !entry.getName().endsWith(extension)) {
+        while (entry != null && !endsWith(entry.getName(), extensions)) {
             entry = zipInputStream.getNextEntry();
         }
         if (entry != null) {
@@ -31,6 +31,15 @@ public class JarReader implements Closeable {
         return null;
     }
 
+    static boolean endsWith(String fileName, String... extensions) {
+        for (final String extension : extensions) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public InputStream getInputStream() throws IOException {
         return zipInputStream;
     }
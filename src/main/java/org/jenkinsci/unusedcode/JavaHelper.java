@@ -6,16 +6,20 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
 public final class JavaHelper {
     private static final int VISIBILITY_PUBLIC_OR_PROTECTED = Modifier.PUBLIC | Modifier.PROTECTED;
-    private static final Map<String, Set<String>> javaMethodListByClassMap = new HashMap<>();
+    // name and descriptor of the public or protected methods of java classes, by class name
+    private static final ConcurrentMap<String, Set<String>> javaMethodListByClassMap =
+            new ConcurrentHashMap<>();
     private static final Set<String> javaLangObjectMethods = getJavaMethods(
             Type.getInternalName(Object.class));
 
@@ -28,40 +32,72 @@ public final class JavaHelper {
         return asmClassName.startsWith("java/") || asmClassName.startsWith("javax/");
     }
 
-    public static void excludeJavaMethods(ClassReader classReader, Set<String> methods) {
-        // exclude methods which implements or overrides a java method,
-        // for example doFilter, equals, hashCode
-        if (isJavaClass(classReader.getSuperName())) {
-            excludeJavaMethods(methods, classReader.getSuperName());
-        } else {
-            methods.removeAll(javaLangObjectMethods);
-        }
-        for (final String interfaceName : classReader.getInterfaces()) {
-            excludeJavaMethods(methods, interfaceName);
+    /**
+     * Removes the methods which implement or override a java method, for example doFilter,
+     * equals, hashCode, including through core classes, such as B.get(I) when B extends A and A
+     * extends java.util.AbstractList. To call once all the classes are known.
+     * @param methods keys of methods of the core classes
+     * @param supertypesByClass super class and interfaces of each core class
+     */
+    public static void excludeJavaMethods(Set<String> methods,
+            Map<String, String[]> supertypesByClass) {
+        // methods of the java supertypes of each class, as the cached sets of each java class
+        final Map<String, Set<Set<String>>> javaMethodSetsByClass = new HashMap<>();
+        final Iterator<String> iterator = methods.iterator();
+        while (iterator.hasNext()) {
+            final String method = iterator.next();
+            // method keys are the class name, the separator, the method name and the descriptor
+            final int separator = method.indexOf(Indexer.SEPARATOR);
+            final String nameAndDesc = method.substring(separator + 1);
+            for (final Set<String> javaMethods : getJavaMethodSets(method.substring(0, separator),
+                    supertypesByClass, javaMethodSetsByClass)) {
+                if (javaMethods.contains(nameAndDesc)) {
+                    iterator.remove();
+                    break;
+                }
+            }
         }
     }
 
-    private static void excludeJavaMethods(Set<String> methods, String asmClassName) {
-        if (!methods.isEmpty() && isJavaClass(asmClassName)) {
-            final Set<String> javaMethods = getJavaMethods(asmClassName);
-            final Iterator<String> iterator = methods.iterator();
-            while (iterator.hasNext()) {
-                final String method = iterator.next();
-                for (final String javaMethod : javaMethods) {
-                    if (method.endsWith(javaMethod)) {
-                        iterator.remove();
-                        break;
-                    }
+    private static Set<Set<String>> getJavaMethodSets(String asmClassName,
+            Map<String, String[]> supertypesByClass,
+            Map<String, Set<Set<String>>> javaMethodSetsByClass) {
+        Set<Set<String>> javaMethodSets = javaMethodSetsByClass.get(asmClassName);
+        if (javaMethodSets != null) {
+            return javaMethodSets;
+        }
+        // the sets are compared by identity, since they are the sets cached for java classes
+        javaMethodSets = Collections.newSetFromMap(new IdentityHashMap<Set<String>, Boolean>());
+        javaMethodSets.add(javaLangObjectMethods);
+        // registered before the walk, in case of a cycle in the hierarchy
+        javaMethodSetsByClass.put(asmClassName, javaMethodSets);
+        final String[] supertypes = supertypesByClass.get(asmClassName);
+        if (supertypes != null) {
+            for (final String supertype : supertypes) {
+                if (supertype == null) {
+                    // super class of module-info
+                    continue;
+                } else if (isJavaClass(supertype)) {
+                    javaMethodSets.add(getJavaMethods(supertype));
+                } else {
+                    javaMethodSets.addAll(getJavaMethodSets(supertype, supertypesByClass,
+                            javaMethodSetsByClass));
                 }
             }
         }
+        return javaMethodSets;
     }
 
     private static Set<String> getJavaMethods(String asmClassName) {
         Set<String> methods = javaMethodListByClassMap.get(asmClassName);
         if (methods == null) {
+            // several threads may load the same class, which is harmless
             methods = getJavaMethodsFromClass(asmClassName);
-            javaMethodListByClassMap.put(asmClassName, methods);
+            final Set<String> previous = javaMethodListByClassMap.putIfAbsent(asmClassName,
+                    methods);
+            if (previous != null) {
+                methods = previous;
+            }
         }
         return methods;
     }
@@ -90,13 +126,10 @@ public final class JavaHelper {
         for (final Class<?> clazz2 : classes) {
             for (final Method method : clazz2.getDeclaredMethods()) {
                 if ((method.getModifiers() & VISIBILITY_PUBLIC_OR_PROTECTED) != 0) {
-                    final String methodKey = method.getName() + Type.getMethodDescriptor(method);
-                    if (!methods.contains(methodKey)) {
-                        methods.add(methodKey);
-                    }
+                    methods.add(method.getName() + Type.getMethodDescriptor(method));
                 }
             }
         }
-        return methods;
+        return Collections.unmodifiableSet(methods);
     }
 }
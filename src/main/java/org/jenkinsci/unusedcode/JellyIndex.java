@@ -0,0 +1,154 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of method ids by simple method name, to search potential usages in jelly files.
+ * It is immutable once built and it can be shared by all the analyzer threads.
+ */
+public class JellyIndex {
+    private final String[] names;
+    private final char[][] nameChars;
+    private final int[][] methodIdsByName;
+    // open addressing hash table of name ids + 1 (0 for empty slot), only for word names
+    private final int[] table;
+    private final int mask;
+    // ids of names which are not only made of word characters, such as "<init>"
+    private final int[] otherNameIds;
+
+    /**
+     * @param methods method keys, by method id
+     */
+    public JellyIndex(String[] methods) {
+        super();
+        final Map<String, List<Integer>> map = new HashMap<>();
+        for (int methodId = 0; methodId < methods.length; methodId++) {
+            final String name = getSimpleName(methods[methodId]);
+            List<Integer> list = map.get(name);
+            if (list == null) {
+                list = new ArrayList<>(1);
+                map.put(name, list);
+            }
+            list.add(methodId);
+        }
+        final int size = map.size();
+        this.names = new String[size];
+        this.nameChars = new char[size][];
+        this.methodIdsByName = new int[size][];
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        final List<Integer> others = new ArrayList<>();
+        int id = 0;
+        for (final Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+            final String name = entry.getKey();
+            names[id] = name;
+            nameChars[id] = name.toCharArray();
+            methodIdsByName[id] = toArray(entry.getValue());
+            if (isWordName(name)) {
+                int slot = WordSet.hash(nameChars[id], 0, nameChars[id].length) & mask;
+                while (table[slot] != 0) {
+                    slot = slot + 1 & mask;
+                }
+                table[slot] = id + 1;
+            } else {
+                others.add(id);
+            }
+            id++;
+        }
+        this.otherNameIds = toArray(others);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    static String getSimpleName(String method) {
+        final String methodName = method.substring(0, method.lastIndexOf('('));
+        return methodName.substring(methodName.lastIndexOf(Indexer.SEPARATOR) + 1);
+    }
+
+    /**
+     * Same definition of a word character as for \b in java.util.regex.Pattern.
+     */
+    static boolean isWordCodePoint(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    static boolean isNonSpacingMark(int codePoint) {
+        return Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    private static boolean isWordName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        int i = 0;
+        while (i < name.length()) {
+            final int codePoint = name.codePointAt(i);
+            // names with non spacing marks are searched literally
+            if (!isWordCodePoint(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return id of the name equal to chars[start..end[, or -1 if there is none
+     */
+    public int findWord(char[] chars, int start, int end) {
+        final int length = end - start;
+        int slot = WordSet.hash(chars, start, end) & mask;
+        int id = table[slot] - 1;
+        while (id >= 0) {
+            final char[] candidate = nameChars[id];
+            if (candidate.length == length && regionEquals(candidate, chars, start)) {
+                return id;
+            }
+            slot = slot + 1 & mask;
+            id = table[slot] - 1;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(char[] name, char[] chars, int start) {
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int[] getOtherNameIds() {
+        return otherNameIds;
+    }
+
+    char[] getNameChars(int id) {
+        return nameChars[id];
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int[] getMethodIds(int id) {
+        return methodIdsByName[id];
+    }
+}
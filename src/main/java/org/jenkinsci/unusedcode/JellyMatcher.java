@@ -0,0 +1,216 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Searches in jelly files the names of a {@link JellyIndex}, with the same results as the regex
+ * ".*\bname\b.*" for each name but in one pass of tokenization for each jelly file: the words of
+ * the jelly files are collected in an {@link AnalysisSummary} and then looked up in the index.
+ * The buffers are reused between jelly files, so an instance must not be shared between threads.
+ */
+public class JellyMatcher {
+    private final JellyIndex index;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] bytes = new byte[16 * 1024];
+    private char[] chars = new char[16 * 1024];
+    private int length;
+
+    public JellyMatcher(JellyIndex index) {
+        super();
+        this.index = index;
+    }
+
+    /**
+     * Adds to the summary the words and the segments between whitespaces of the jelly file.
+     */
+    public void collect(InputStream input, AnalysisSummary summary) throws IOException {
+        decode(read(input));
+
+        int i = 0;
+        while (i < length) {
+            int codePoint = Character.codePointAt(chars, i, length);
+            if (JellyIndex.isWordCodePoint(codePoint)) {
+                final int start = i;
+                // like in java.util.regex.Pattern, a non spacing mark is a word character
+                // if it follows a letter or a digit
+                boolean letterOrDigit = Character.isLetterOrDigit(codePoint);
+                i += Character.charCount(codePoint);
+                while (i < length) {
+                    codePoint = Character.codePointAt(chars, i, length);
+                    if (JellyIndex.isWordCodePoint(codePoint)) {
+                        letterOrDigit = codePoint != '_';
+                    } else if (!letterOrDigit || !JellyIndex.isNonSpacingMark(codePoint)) {
+                        break;
+                    }
+                    i += Character.charCount(codePoint);
+                }
+                summary.addJellyWord(chars, start, i);
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        // names which are not only made of word characters, such as "<init>", can only be found
+        // in segments between whitespaces with at least one character which is not a word character
+        i = 0;
+        while (i < length) {
+            int codePoint = Character.codePointAt(chars, i, length);
+            if (Character.isWhitespace(codePoint)) {
+                i += Character.charCount(codePoint);
+            } else {
+                final int start = i;
+                boolean onlyWordCharacters = true;
+                while (i < length && !Character.isWhitespace(codePoint)) {
+                    onlyWordCharacters = onlyWordCharacters
+                            && JellyIndex.isWordCodePoint(codePoint);
+                    i += Character.charCount(codePoint);
+                    if (i < length) {
+                        codePoint = Character.codePointAt(chars, i, length);
+                    }
+                }
+                if (!onlyWordCharacters) {
+                    summary.addJellySegment(chars, start, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears in unusedMethods the methods whose simple name is found as a word in the jelly files
+     * of the summary.
+     * @param unusedMethods unused methods of one or several core versions
+     * @return number of methods cleared by this call
+     */
+    public int match(AnalysisSummary summary, AtomicBitSet... unusedMethods) {
+        return match(summary, null, unusedMethods);
+    }
+
+    /**
+     * Like {@link #match(AnalysisSummary, AtomicBitSet...)}, and also sets in usedMethods the
+     * methods found.
+     * @param usedMethods methods used by the file of the summary (may be null)
+     */
+    public int match(AnalysisSummary summary, BitSet usedMethods,
+            AtomicBitSet... unusedMethods) {
+        int cleared = 0;
+        for (final String word : summary.getJellyWords()) {
+            load(word);
+            cleared += found(index.findWord(chars, 0, length), usedMethods, unusedMethods);
+        }
+        for (final int id : index.getOtherNameIds()) {
+            final char[] name = index.getNameChars(id);
+            for (final String segment : summary.getJellySegments()) {
+                load(segment);
+                // a segment is between whitespaces, which are not word characters
+                if (containsWithBoundaries(name)) {
+                    cleared += found(id, usedMethods, unusedMethods);
+                    break;
+                }
+            }
+        }
+        return cleared;
+    }
+
+    private int found(int id, BitSet usedMethods, AtomicBitSet[] unusedMethods) {
+        int cleared = 0;
+        if (id >= 0) {
+            for (final int methodId : index.getMethodIds(id)) {
+                if (usedMethods != null) {
+                    usedMethods.set(methodId);
+                }
+                for (final AtomicBitSet versionUnusedMethods : unusedMethods) {
+                    if (versionUnusedMethods.clear(methodId)) {
+                        cleared++;
+                    }
+                }
+            }
+        }
+        return cleared;
+    }
+
+    private void load(String string) {
+        length = string.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        string.getChars(0, length, chars, 0);
+    }
+
+    private int read(InputStream input) throws IOException {
+        int size = 0;
+        int len = input.read(bytes, size, bytes.length - size);
+        while (len != -1) {
+            size += len;
+            if (size == bytes.length) {
+                final byte[] newBytes = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, newBytes, 0, size);
+                bytes = newBytes;
+            }
+            len = input.read(bytes, size, bytes.length - size);
+        }
+        return size;
+    }
+
+    private void decode(int size) {
+        // in UTF-8, there are never more chars than bytes
+        if (chars.length < size) {
+            chars = new char[bytes.length];
+        }
+        final CharBuffer charBuffer = CharBuffer.wrap(chars);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(bytes, 0, size), charBuffer, true);
+        decoder.flush(charBuffer);
+        length = charBuffer.position();
+    }
+
+    private boolean containsWithBoundaries(char[] name) {
+        final int last = length - name.length;
+        for (int i = 0; i <= last; i++) {
+            if (regionMatches(name, i) && isBoundary(i) && isBoundary(i + name.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionMatches(char[] name, int start) {
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBoundary(int position) {
+        final boolean left = position > 0
+                && isWordAt(position - Character.charCount(Character.codePointBefore(chars,
+                        position, 0)));
+        final boolean right = position < length && isWordAt(position);
+        return left != right;
+    }
+
+    private boolean isWordAt(int position) {
+        int codePoint = Character.codePointAt(chars, position, length);
+        if (!JellyIndex.isNonSpacingMark(codePoint)) {
+            return JellyIndex.isWordCodePoint(codePoint);
+        }
+        // like in java.util.regex.Pattern, a non spacing mark is a word character
+        // if it follows a letter or a digit
+        int i = position;
+        while (JellyIndex.isNonSpacingMark(codePoint) && i > 0) {
+            codePoint = Character.codePointBefore(chars, i, 0);
+            i -= Character.charCount(codePoint);
+        }
+        return Character.isLetterOrDigit(codePoint);
+    }
+}
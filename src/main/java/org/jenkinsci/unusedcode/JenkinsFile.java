@@ -10,16 +10,19 @@ import java.net.URL;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 
 public class JenkinsFile {
     // relative to user dir
-    private static final File WORK_DIRECTORY = new File("work");
+    static final File WORK_DIRECTORY = new File("work");
 
     private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory() {
         @Override
@@ -29,27 +32,43 @@ public class JenkinsFile {
             return t;
         }
     };
-    private static final ExecutorService downloadExecutorService = Executors.newFixedThreadPool(8,
-            DAEMON_THREAD_FACTORY);
+    // for example: -Dunusedcode.downloadThreads=16
+    private static final ExecutorService downloadExecutorService = Executors.newFixedThreadPool(
+            Integer.getInteger("unusedcode.downloadThreads", 8), DAEMON_THREAD_FACTORY);
 
     private final String name;
     private final String version;
     private final URL url;
     private final String wiki;
-    private final File file;
+    // checksums in base64 given by the update center (may be null)
+    private final String sha1;
+    private final String sha256;
+    private final String fileName;
     private final File versionsRootDirectory;
-    private Future<?> downloadFuture;
+    private String versionDirectory;
+    private File file;
+    // directories of the other versions of the plugin, analyzed in the same run and kept by the
+    // download
+    private Set<String> selectedVersions = Collections.emptySet();
+    private volatile Future<?> downloadFuture;
 
     public JenkinsFile(String name, String version, String url, String wiki)
             throws MalformedURLException {
+        this(name, version, url, wiki, null, null);
+    }
+
+    public JenkinsFile(String name, String version, String url, String wiki, String sha1,
+            String sha256) throws MalformedURLException {
         super();
         this.name = name;
         this.version = version;
         this.url = new URL(url);
         this.wiki = wiki;
-        final String fileName = url.substring(url.lastIndexOf('/'));
+        this.sha1 = sha1;
+        this.sha256 = sha256;
+        this.fileName = url.substring(url.lastIndexOf('/'));
         this.versionsRootDirectory = new File(WORK_DIRECTORY, name);
-        this.file = new File(versionsRootDirectory, version + '/' + fileName);
+        setVersionDirectory(version);
     }
 
     public String getName() {
@@ -60,6 +79,10 @@ public class JenkinsFile {
         return version;
     }
 
+    public URL getUrl() {
+        return url;
+    }
+
     public String getWiki() {
         return wiki;
     }
@@ -68,15 +91,75 @@ public class JenkinsFile {
         return file;
     }
 
+    /**
+     * @return name of the directory of this version in the directory of the plugin, which is
+     *         the version unless another file of the plugin has the same version
+     */
+    public String getVersionDirectory() {
+        return versionDirectory;
+    }
+
+    /**
+     * @return true if the other file has the same content, from the sha-256 or the sha-1 of
+     *         both in the update center, or else if it has the same version
+     */
+    boolean hasSameContent(JenkinsFile other) {
+        if (sha256 != null && other.sha256 != null) {
+            return sha256.equals(other.sha256);
+        } else if (sha1 != null && other.sha1 != null) {
+            return sha1.equals(other.sha1);
+        }
+        return version.equals(other.version);
+    }
+
+    /**
+     * Downloads this file in a directory named by its version and by the beginning of its
+     * checksum, for a file with the same version as another file of the plugin but with
+     * another content.
+     */
+    void setVersionDirectoryOfContent() {
+        final String checksum = sha256 != null ? sha256 : sha1;
+        // the base64 without the characters which are not in file names
+        final String checksumPrefix = checksum.replaceAll("[^A-Za-z0-9]", "");
+        setVersionDirectory(version + '-'
+                + checksumPrefix.substring(0, Math.min(8, checksumPrefix.length())));
+    }
+
+    private void setVersionDirectory(String versionDirectory) {
+        this.versionDirectory = versionDirectory;
+        this.file = new File(versionsRootDirectory, versionDirectory + '/' + fileName);
+    }
+
+    /**
+     * @param selectedVersions directories of the versions of the plugin which are downloaded in
+     *        the same directory, and which are not deleted as previous versions when this
+     *        version is downloaded
+     */
+    void setSelectedVersions(Set<String> selectedVersions) {
+        this.selectedVersions = selectedVersions;
+    }
+
     public void startDownloadIfNotExists() {
+        startDownloadIfNotExists(null);
+    }
+
+    /**
+     * @param listener called when the file is downloaded or when the download has failed,
+     *        or immediately if the file is already downloaded (may be null)
+     */
+    public void startDownloadIfNotExists(final Runnable listener) {
         if (file.exists()) {
             // if file is already downloaded, do not download again
+            if (listener != null) {
+                listener.run();
+            }
             return;
         }
         final String tmpPrefix = getClass().getPackage().getName() + '-';
-        downloadFuture = downloadExecutorService.submit(new Callable<Object>() {
+        final Callable<Object> download = new Callable<Object>() {
             @Override
             public Object call() throws IOException {
+                final JfrEvent event = JfrEvent.begin(JfrEvent.Type.DOWNLOAD);
                 final File tempFile = File.createTempFile(tmpPrefix, ".tmp");
                 try {
                     final OutputStream output = new BufferedOutputStream(
@@ -86,9 +169,8 @@ public class JenkinsFile {
                     } finally {
                         output.close();
                     }
-                    versionsRootDirectory.mkdirs();
-                    // delete previous version
-                    deleteRecursive(versionsRootDirectory);
+                    // delete previous versions
+                    deleteOtherVersions();
                     file.getParentFile().mkdirs();
                     // write target file only if complete
                     try {
@@ -98,12 +180,39 @@ public class JenkinsFile {
                         Files.move(tempFile.toPath(), file.toPath());
                     }
                     Log.log("Downloaded " + file.getName() + ", " + file.length() / 1024 + " Kb");
+                    Metrics.addBytesDownloaded(file.length());
+                    event.commit(name, version, file.length(), 0, 0);
                 } finally {
                     tempFile.delete();
                 }
                 return null;
             }
-        });
+        };
+        // the future is known before the listener is called by done()
+        final FutureTask<Object> futureTask = new FutureTask<Object>(download) {
+            @Override
+            protected void done() {
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        };
+        downloadFuture = futureTask;
+        downloadExecutorService.execute(futureTask);
+    }
+
+    private void deleteOtherVersions() {
+        final File[] versionDirectories = versionsRootDirectory.listFiles();
+        if (versionDirectories == null) {
+            return;
+        }
+        for (final File versionDirectory : versionDirectories) {
+            final String directoryName = versionDirectory.getName();
+            if (directoryName.equals(versionDirectory)
+                    || !selectedVersions.contains(directoryName)) {
+                deleteRecursive(versionDirectory);
+            }
+        }
     }
 
     private static boolean deleteRecursive(File path) {
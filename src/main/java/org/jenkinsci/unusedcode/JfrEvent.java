@@ -0,0 +1,176 @@
+package org.jenkinsci.unusedcode;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Flight recorder event of a stage of the analysis, if -Dunusedcode.jfr=true and if the jvm has
+ * jdk.jfr (java 11+ or 8u262+), or else an event which does nothing. The sources are for java
+ * 1.7, so the subclasses of jdk.jfr.Event are generated with ASM when the first event begins.
+ * The events are recorded with for example
+ * -XX:StartFlightRecording=filename=target/unusedcode.jfr.
+ */
+final class JfrEvent {
+    private static final boolean ENABLED = Boolean.getBoolean("unusedcode.jfr");
+    private static final JfrEvent DISABLED = new JfrEvent(null, null);
+    private static final String PACKAGE = JfrEvent.class.getPackage().getName();
+    private static final String[] FIELDS = { "name", "version", "fileSize", "classCount",
+            "methodsRemoved", };
+    private static final String[] FIELD_DESCS = { "Ljava/lang/String;", "Ljava/lang/String;",
+            "J", "I", "I", };
+    private static final String[] FIELD_LABELS = { "Name", "Version", "File Size",
+            "Class Count", "Methods Removed", };
+
+    enum Type {
+        DOWNLOAD("Download", "Download"),
+        INDEXING("Indexing", "Indexing of Jenkins Core"),
+        CORE_ANALYSIS("CoreAnalysis", "Core Analysis"),
+        PLUGIN_ANALYSIS("PluginAnalysis", "Plugin Analysis"),
+        REPORT("Report", "Report");
+
+        private final String name;
+        private final String label;
+
+        Type(String name, String label) {
+            this.name = name;
+            this.label = label;
+        }
+    }
+
+    // null if the events are disabled or if jdk.jfr is not available
+    private static final EventClasses EVENT_CLASSES = ENABLED ? EventClasses.define() : null;
+
+    private final EventClasses eventClasses;
+    private final Object event;
+
+    private JfrEvent(EventClasses eventClasses, Object event) {
+        super();
+        this.eventClasses = eventClasses;
+        this.event = event;
+    }
+
+    /**
+     * Begins an event, to commit at the end of the stage.
+     */
+    static JfrEvent begin(Type type) {
+        if (EVENT_CLASSES == null) {
+            return DISABLED;
+        }
+        try {
+            final Object event = EVENT_CLASSES.constructors.get(type).newInstance();
+            EVENT_CLASSES.begin.invoke(event);
+            return new JfrEvent(EVENT_CLASSES, event);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void commit(String name, String version, long fileSize, int classCount,
+            int methodsRemoved) {
+        if (event == null) {
+            return;
+        }
+        final Field[] fields = eventClasses.fields.get(event.getClass());
+        try {
+            fields[0].set(event, name);
+            fields[1].set(event, version);
+            fields[2].setLong(event, fileSize);
+            fields[3].setInt(event, classCount);
+            fields[4].setInt(event, methodsRemoved);
+            eventClasses.commit.invoke(event);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generated event classes, with their constructor and fields.
+     */
+    private static class EventClasses extends ClassLoader {
+        private final Map<Type, Constructor<?>> constructors = new EnumMap<>(Type.class);
+        private final Map<Class<?>, Field[]> fields = new HashMap<>();
+        private Method begin;
+        private Method commit;
+
+        EventClasses() {
+            super(JfrEvent.class.getClassLoader());
+        }
+
+        static EventClasses define() {
+            final EventClasses eventClasses = new EventClasses();
+            try {
+                final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                eventClasses.begin = eventClass.getMethod("begin");
+                eventClasses.commit = eventClass.getMethod("commit");
+                for (final Type type : Type.values()) {
+                    final byte[] bytes = generate(type);
+                    final Class<?> clazz = eventClasses.defineClass(
+                            PACKAGE + ".jfr." + type.name + "Event", bytes, 0, bytes.length);
+                    eventClasses.constructors.put(type, clazz.getConstructor());
+                    final Field[] classFields = new Field[FIELDS.length];
+                    for (int i = 0; i < FIELDS.length; i++) {
+                        classFields[i] = clazz.getField(FIELDS[i]);
+                    }
+                    eventClasses.fields.put(clazz, classFields);
+                }
+                return eventClasses;
+            } catch (final ReflectiveOperationException | LinkageError e) {
+                Log.log("jfr events are disabled, because " + e.toString());
+                return null;
+            }
+        }
+
+        private static byte[] generate(Type type) {
+            final String className = (PACKAGE + ".jfr." + type.name + "Event").replace('.', '/');
+            final ClassWriter classWriter = new ClassWriter(0);
+            classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, className,
+                    null, "jdk/jfr/Event", null);
+            visitStringAnnotation(classWriter.visitAnnotation("Ljdk/jfr/Name;", true),
+                    PACKAGE + '.' + type.name);
+            visitStringAnnotation(classWriter.visitAnnotation("Ljdk/jfr/Label;", true),
+                    type.label);
+            final AnnotationVisitor category = classWriter.visitAnnotation("Ljdk/jfr/Category;",
+                    true);
+            final AnnotationVisitor categoryValue = category.visitArray("value");
+            categoryValue.visit(null, "Unused Code Detector");
+            categoryValue.visitEnd();
+            category.visitEnd();
+            for (int i = 0; i < FIELDS.length; i++) {
+                final FieldVisitor field = classWriter.visitField(Opcodes.ACC_PUBLIC, FIELDS[i],
+                        FIELD_DESCS[i], null, null);
+                visitStringAnnotation(field.visitAnnotation("Ljdk/jfr/Label;", true),
+                        FIELD_LABELS[i]);
+                if ("fileSize".equals(FIELDS[i])) {
+                    field.visitAnnotation("Ljdk/jfr/DataAmount;", true).visitEnd();
+                }
+                field.visitEnd();
+            }
+            final MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC,
+                    "<init>", "()V", null, null);
+            constructor.visitCode();
+            constructor.visitVarInsn(Opcodes.ALOAD, 0);
+            constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "jdk/jfr/Event", "<init>", "()V",
+                    false);
+            constructor.visitInsn(Opcodes.RETURN);
+            constructor.visitMaxs(1, 1);
+            constructor.visitEnd();
+            classWriter.visitEnd();
+            return classWriter.toByteArray();
+        }
+
+        private static void visitStringAnnotation(AnnotationVisitor annotation, String value) {
+            annotation.visit("value", value);
+            annotation.visitEnd();
+        }
+    }
+}
@@ -1,22 +1,64 @@
 package org.jenkinsci.unusedcode;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Writes the messages to the console and to the html output, in a single writer thread which
+ * flushes once per batch of messages, so the analysis threads do not wait for the writes and do
+ * not mix their messages.
+ */
 public final class Log {
     // relative to user dir
     private static final File HTML_FILE = new File("target/output.html");
+    // for example: -Dunusedcode.quiet=true to write the messages only in the html output
+    private static final boolean QUIET = Boolean.getBoolean("unusedcode.quiet");
+    // for example: -Dunusedcode.logSections=true to write the messages of each plugin together
+    private static final boolean SECTIONS = Boolean.getBoolean("unusedcode.logSections");
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final Entry CLOSE = new Entry(Collections.<String> emptyList(), false);
+
+    private static final PrintStream CONSOLE = System.out;
     private static final Writer FILE_WRITER = openFileWriter();
+    // bounded, so the analysis threads wait if the writer can not follow
+    private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final ThreadLocal<List<String>> SECTION = new ThreadLocal<>();
+    private static final AtomicBoolean CLOSED = new AtomicBoolean();
+    // the check of CLOSED and the put of an entry are atomic against the put of CLOSE,
+    // so that no entry is put after CLOSE
+    private static final ReadWriteLock CLOSE_LOCK = new ReentrantReadWriteLock();
+    private static final Thread WRITER_THREAD = startWriterThread();
 
     private Log() {
         super();
     }
 
+    private static class Entry {
+        private final List<String> messages;
+        private final boolean newLine;
+
+        Entry(List<String> messages, boolean newLine) {
+            super();
+            this.messages = messages;
+            this.newLine = newLine;
+        }
+    }
+
     private static Writer openFileWriter() {
         try {
-            final Writer writer = new FileWriter(HTML_FILE);
+            final Writer writer = new BufferedWriter(new FileWriter(HTML_FILE), 64 * 1024);
             writer.append("<html><head>");
             writer.append("<title>Unused code in Jenkins api</title>");
             writer.append(
@@ -29,14 +71,66 @@ public final class Log {
         }
     }
 
-    public static void log(String message) {
-        System.out.println(message);
-        System.out.flush();
+    private static Thread startWriterThread() {
+        final Thread thread = new Thread("unusedcode-log") {
+            @Override
+            public void run() {
+                final List<Entry> batch = new ArrayList<>();
+                try {
+                    boolean closing = false;
+                    while (!closing) {
+                        batch.add(QUEUE.take());
+                        QUEUE.drainTo(batch);
+                        for (final Entry entry : batch) {
+                            closing = closing || entry == CLOSE;
+                            write(entry);
+                        }
+                        batch.clear();
+                        flush();
+                    }
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        // the messages still in the queue are written if main does not end normally
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                closeLog();
+            }
+        });
+        return thread;
+    }
+
+    private static void write(Entry entry) {
+        for (final String message : entry.messages) {
+            if (!QUIET) {
+                CONSOLE.print(message);
+                if (entry.newLine) {
+                    CONSOLE.println();
+                }
+            }
+            if (FILE_WRITER != null) {
+                try {
+                    FILE_WRITER.write(message);
+                    if (entry.newLine) {
+                        FILE_WRITER.write("<br/>");
+                        FILE_WRITER.write('\n');
+                    }
+                } catch (final IOException e) {
+                    continue;
+                }
+            }
+        }
+    }
+
+    private static void flush() {
+        CONSOLE.flush();
         if (FILE_WRITER != null) {
             try {
-                FILE_WRITER.write(message);
-                FILE_WRITER.write("<br/>");
-                FILE_WRITER.write('\n');
                 FILE_WRITER.flush();
             } catch (final IOException e) {
                 return;
@@ -44,20 +138,82 @@ public final class Log {
         }
     }
 
-    public static void print(String message) {
-        System.out.print(message);
-        System.out.flush();
-        if (FILE_WRITER != null) {
-            try {
-                FILE_WRITER.write(message);
-                FILE_WRITER.flush();
-            } catch (final IOException e) {
+    private static void enqueue(Entry entry) {
+        CLOSE_LOCK.readLock().lock();
+        try {
+            if (!CLOSED.get()) {
+                QUEUE.put(entry);
                 return;
             }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            CLOSE_LOCK.readLock().unlock();
+        }
+        // nobody will write it in the html output now
+        if (!QUIET) {
+            for (final String message : entry.messages) {
+                CONSOLE.print(entry.newLine ? message + '\n' : message);
+            }
+        }
+    }
+
+    public static void log(String message) {
+        final List<String> section = SECTION.get();
+        if (section != null) {
+            section.add(message);
+        } else {
+            enqueue(new Entry(Collections.singletonList(message), true));
+        }
+    }
+
+    public static void print(String message) {
+        enqueue(new Entry(Collections.singletonList(message), false));
+    }
+
+    /**
+     * Starts to keep the messages of the current thread, to write them together at
+     * {@link #endSection()}, if -Dunusedcode.logSections=true.
+     */
+    public static void beginSection() {
+        if (SECTIONS) {
+            SECTION.set(new ArrayList<String>());
+        }
+    }
+
+    public static void endSection() {
+        final List<String> section = SECTION.get();
+        if (section != null) {
+            SECTION.remove();
+            if (!section.isEmpty()) {
+                enqueue(new Entry(section, true));
+            }
         }
     }
 
     public static void closeLog() {
+        CLOSE_LOCK.writeLock().lock();
+        try {
+            if (!CLOSED.compareAndSet(false, true)) {
+                return;
+            }
+            QUEUE.put(CLOSE);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            CLOSE_LOCK.writeLock().unlock();
+        }
+        try {
+            WRITER_THREAD.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (FILE_WRITER == null) {
+            return;
+        }
         try {
             FILE_WRITER.append("</body></html>");
             FILE_WRITER.close();
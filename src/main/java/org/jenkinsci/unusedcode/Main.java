@@ -1,77 +1,157 @@
 package org.jenkinsci.unusedcode;
 
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipException;
 
 public class Main {
-    // experimental update center has more plugins but are often older
+    // the experimental update center has more plugins but are often older, for example:
+    // -Dunusedcode.updateCenterUrl=http://updates.jenkins-ci.org/update-center.json,
+    // http://updates.jenkins-ci.org/experimental/update-center.json
     private static final String UPDATE_CENTER_URL =
-    // "http://updates.jenkins-ci.org/experimental/update-center.json";
-    "http://updates.jenkins-ci.org/update-center.json";
+            "http://updates.jenkins-ci.org/update-center.json";
+    private static final String CORE_URL_PATTERN =
+            "http://updates.jenkins-ci.org/download/war/%s/jenkins.war";
 
     public static void main(String[] args) throws Exception {
         final long start = System.currentTimeMillis();
+        Metrics.registerMBean();
+        long phaseStart = System.nanoTime();
         log("<h2> Finds and reports unused methods in Jenkins api </h2>"
                 + " (including in latest published plugins and potential usage in jelly files, except getters, setters and fields, except deprecated classes and methods, except unit tests)");
-        final UpdateCenter updateCenter = new UpdateCenter(new URL(UPDATE_CENTER_URL));
+        // for example: -Dunusedcode.reportFormats=ndjson,csv,binary, checked before the analysis
+        final List<String> reportFormats = getListProperty("unusedcode.reportFormats");
+        Reports.checkReportFormats(reportFormats);
+        // for example: -Dunusedcode.updateCenterUrl=file:target/corpus/update-center.json
+        final List<URL> updateCenterUrls = new ArrayList<>();
+        for (final String updateCenterUrl : getListProperty("unusedcode.updateCenterUrl",
+                UPDATE_CENTER_URL)) {
+            updateCenterUrls.add(toUrl(updateCenterUrl));
+        }
+        // for example: -Dunusedcode.pluginVersions=all to analyze the stable and the experimental
+        // versions of a plugin, instead of only the newest
+        final UpdateCenter.PluginVersions pluginVersions = UpdateCenter.PluginVersions
+                .valueOf(System.getProperty("unusedcode.pluginVersions", "newest")
+                        .toUpperCase(Locale.ENGLISH));
+        final UpdateCenter updateCenter = new UpdateCenter(updateCenterUrls, pluginVersions);
+        // for example: -Dunusedcode.coreVersions=2.426.3 to also analyze the last LTS,
+        // and -Dunusedcode.coreUrlPattern=file:target/cores/%s/jenkins.war
+        final String coreUrlPattern = System.getProperty("unusedcode.coreUrlPattern",
+                CORE_URL_PATTERN);
+        for (final String coreVersion : getListProperty("unusedcode.coreVersions")) {
+            updateCenter.addCore(coreVersion, String.format(coreUrlPattern, coreVersion));
+        }
+        Metrics.endPhase("updateCenterLoad", phaseStart);
         log("Downloaded update-center.json");
-        updateCenter.download();
-        log("All files are up to date (" + updateCenter.getPlugins().size() + " plugins)");
+        phaseStart = System.nanoTime();
+        // plugins are analyzed as soon as they are downloaded, after indexing of core
+        updateCenter.startDownloads();
+        updateCenter.waitCoreDownloads();
+        Metrics.endPhase("coreDownload", phaseStart);
+        phaseStart = System.nanoTime();
 
         log("Indexing api in Jenkins");
-        final byte[] bytes = Indexer.readJenkinsCoreFile(updateCenter.getCore().getFile());
         final Indexer indexer = new Indexer();
-        indexer.indexJar(new ByteArrayInputStream(bytes));
+        // for example: -Dunusedcode.includedPackages=hudson.model,jenkins.model
+        final List<String> includedPackages = getListProperty("unusedcode.includedPackages");
+        final List<String> excludedPackages = getListProperty("unusedcode.excludedPackages");
+        if (!includedPackages.isEmpty() || !excludedPackages.isEmpty()) {
+            log("Included packages : " + includedPackages + ", excluded packages : "
+                    + excludedPackages);
+        }
+        indexer.setPackageFilters(includedPackages, excludedPackages);
+        final List<File> coreFiles = new ArrayList<>();
+        for (final JenkinsFile core : updateCenter.getCores()) {
+            coreFiles.add(core.getFile());
+        }
+        indexer.indexJenkinsCores(coreFiles);
+        Metrics.endPhase("coreIndex", phaseStart);
 
+        // for example: -Dunusedcode.daemonPort=8090 to answer usage queries after the analysis
+        final Integer daemonPort = Integer.getInteger("unusedcode.daemonPort");
+        final UsageIndex usageIndex = daemonPort != null
+                ? new UsageIndex(indexer.getMethodCount(), indexer.getVersionCount()) : null;
         Log.log("Analyzing usage in core and plugins");
-        analyze(updateCenter.getCore(), updateCenter.getPlugins(), indexer);
+        phaseStart = System.nanoTime();
+        analyze(updateCenter, indexer, usageIndex);
+        Metrics.endPhase("analysis", phaseStart);
+        log("All files are downloaded and analyzed (" + updateCenter.getPlugins().size()
+                + " plugins)");
+        long cacheHits = 0;
+        long cacheMisses = 0;
+        for (int version = 0; version < indexer.getVersionCount(); version++) {
+            cacheHits += indexer.getHierarchy(version).getCacheHits();
+            cacheMisses += indexer.getHierarchy(version).getCacheMisses();
+        }
+        log("Polymorphic methods cache : " + cacheHits + " hits, " + cacheMisses + " misses");
 
-        new Reports(updateCenter, indexer).report();
+        phaseStart = System.nanoTime();
+        new Reports(updateCenter, indexer, reportFormats).report();
+        Metrics.endPhase("reporting", phaseStart);
+        Metrics.write();
+        if (daemonPort != null) {
+            // the http server thread keeps running after main
+            new UsageDaemon(updateCenter, indexer, usageIndex).start(daemonPort,
+                    Long.getLong("unusedcode.daemonRescanSeconds", 60));
+        }
 
         log("duration : " + (System.currentTimeMillis() - start) + " ms at "
                 + DateFormat.getDateTimeInstance().format(new Date()));
         Log.closeLog();
     }
 
-    private static void analyze(final JenkinsFile core, List<JenkinsFile> plugins,
-            final Indexer indexer) throws InterruptedException, ExecutionException {
-        final ExecutorService executorService = Executors
-                .newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        final List<Future<Object>> futures = new ArrayList<>(plugins.size() + 1);
-        final Callable<Object> coreTask = new Callable<Object>() {
-            @Override
-            public Object call() throws IOException {
-                final Analyzer analyzer = new Analyzer(indexer);
-                try {
-                    analyzer.analyzeCore(core.getFile());
-                } catch (final Exception e) {
-                    Log.log(e.toString() + " on " + core.getFile().getName());
-                    e.printStackTrace();
+    private static void analyze(UpdateCenter updateCenter, final Indexer indexer,
+            final UsageIndex usageIndex) throws Exception {
+        // for example: -Dunusedcode.analysisThreads=4
+        final int analysisThreads = Integer.getInteger("unusedcode.analysisThreads",
+                Runtime.getRuntime().availableProcessors());
+        // the most costly files are analyzed first
+        final AnalysisScheduler scheduler = new AnalysisScheduler(analysisThreads);
+        final List<Future<Object>> futures = new ArrayList<>(updateCenter.getPlugins().size() + 1);
+        final List<JenkinsFile> cores = updateCenter.getCores();
+        for (int i = 0; i < cores.size(); i++) {
+            final JenkinsFile core = cores.get(i);
+            // the calls in a core remove methods only in this core version
+            final int coreVersion = i;
+            final Callable<Object> coreTask = new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    final Analyzer analyzer = new Analyzer(indexer, usageIndex);
+                    Log.beginSection();
+                    try {
+                        analyzer.analyzeCore(core.getFile(), core.getVersion(), coreVersion);
+                    } catch (final Exception e) {
+                        Log.log(e.toString() + " on " + core.getFile().getName());
+                        e.printStackTrace();
+                    } finally {
+                        Log.endSection();
+                    }
+                    return null;
                 }
-                return null;
-            }
-        };
-        futures.add(executorService.submit(coreTask));
-        for (final JenkinsFile plugin : plugins) {
+            };
+            futures.add(scheduler.submit(core.getFile(), coreTask));
+        }
+        JenkinsFile downloadedPlugin = updateCenter.nextDownloadedPlugin();
+        while (downloadedPlugin != null) {
+            final JenkinsFile plugin = downloadedPlugin;
             final Callable<Object> task = new Callable<Object>() {
                 @Override
                 public Object call() throws IOException {
-                    final Analyzer analyzer = new Analyzer(indexer);
+                    final Analyzer analyzer = new Analyzer(indexer, usageIndex);
+                    Log.beginSection();
                     try {
-                        analyzer.analyzePlugin(plugin.getFile());
+                        // the version of the usage is its directory, as in the daemon
+                        analyzer.analyzePlugin(plugin.getFile(), plugin.getVersionDirectory());
                     } catch (final EOFException | ZipException e) {
                         Log.log("deleting " + plugin.getFile().getName() + " and skipping, because "
                                 + e.toString());
@@ -79,24 +159,56 @@ public class Main {
                     } catch (final Exception e) {
                         Log.log(e.toString() + " on " + plugin.getFile().getName());
                         e.printStackTrace();
+                    } finally {
+                        Log.endSection();
                     }
                     return null;
                 }
             };
-            futures.add(executorService.submit(task));
+            futures.add(scheduler.submit(plugin.getFile(), task));
+            downloadedPlugin = updateCenter.nextDownloadedPlugin();
         }
 
         for (final Future<Object> future : futures) {
             future.get();
         }
-        executorService.shutdown();
-        executorService.awaitTermination(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+        scheduler.saveCosts(Metrics.getFiles());
         // wait for threads to stop
         Thread.sleep(100);
         log("");
         log("");
     }
 
+    private static List<String> getListProperty(String name) {
+        return getListProperty(name, null);
+    }
+
+    private static List<String> getListProperty(String name, String defaultValue) {
+        final String value = System.getProperty(name, defaultValue);
+        final List<String> values = new ArrayList<>();
+        if (value != null) {
+            for (final String element : value.split(",")) {
+                if (!element.trim().isEmpty()) {
+                    values.add(element.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the url, or the url of the file if it is a local path such as
+     *         target/corpus/update-center.json
+     */
+    private static URL toUrl(String urlOrPath) throws MalformedURLException {
+        try {
+            return new URL(urlOrPath);
+        } catch (final MalformedURLException e) {
+            return new File(urlOrPath).toURI().toURL();
+        }
+    }
+
     private static void log(String message) {
         Log.log(message);
     }
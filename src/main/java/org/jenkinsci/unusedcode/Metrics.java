@@ -0,0 +1,272 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of the phases and of the analyzed files, written to target/metrics.json at
+ * the end of the run and readable in jmx during the run. The analyzer threads add their counters
+ * once per file.
+ */
+public final class Metrics {
+    // relative to user dir, next to output.html
+    private static final File JSON_FILE = new File("target/metrics.json");
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final AtomicLong BYTES_DOWNLOADED = new AtomicLong();
+    private static final AtomicLong BYTES_INFLATED = new AtomicLong();
+    private static final AtomicLong CLASSES_PARSED = new AtomicLong();
+    private static final AtomicLong CALL_SITES_VISITED = new AtomicLong();
+    private static final AtomicLong HIERARCHY_RESOLUTIONS = new AtomicLong();
+    private static final AtomicLong JELLY_FILES_SCANNED = new AtomicLong();
+    private static final AtomicLong METHODS_REMOVED = new AtomicLong();
+    private static final Map<String, Long> PHASE_MILLIS = new LinkedHashMap<>();
+    private static final Queue<FileMetrics> FILES = new ConcurrentLinkedQueue<>();
+
+    private Metrics() {
+        super();
+    }
+
+    /**
+     * Counters of the analysis of one war or plugin, by one thread.
+     */
+    static class FileMetrics {
+        private final File file;
+        private final String name;
+        private final long size;
+        private final long startNanos = System.nanoTime();
+        private final long startCpuNanos = getCurrentThreadCpuTime();
+        private long wallNanos;
+        private long cpuNanos;
+        boolean summaryReused;
+        long bytesInflated;
+        int classesParsed;
+        int callSitesVisited;
+        int hierarchyResolutions;
+        int jellyFilesScanned;
+        int methodsRemoved;
+        int nestedJarsReused;
+
+        FileMetrics(File file) {
+            super();
+            this.file = file;
+            this.name = file.getName();
+            this.size = file.length();
+        }
+
+        void addCounters(FileMetrics other) {
+            cpuNanos += other.cpuNanos;
+            bytesInflated += other.bytesInflated;
+            classesParsed += other.classesParsed;
+            callSitesVisited += other.callSitesVisited;
+            jellyFilesScanned += other.jellyFilesScanned;
+        }
+
+        /**
+         * Adds the cpu time of a part of the analysis run in another thread.
+         */
+        void addCpuNanos(long nanos) {
+            cpuNanos += nanos;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        int getMethodsRemoved() {
+            return methodsRemoved;
+        }
+
+        boolean isSummaryReused() {
+            return summaryReused;
+        }
+    }
+
+    private static class MetricsBean implements MetricsMXBean {
+        MetricsBean() {
+            super();
+        }
+
+        @Override
+        public long getBytesDownloaded() {
+            return BYTES_DOWNLOADED.get();
+        }
+
+        @Override
+        public long getBytesInflated() {
+            return BYTES_INFLATED.get();
+        }
+
+        @Override
+        public long getClassesParsed() {
+            return CLASSES_PARSED.get();
+        }
+
+        @Override
+        public long getCallSitesVisited() {
+            return CALL_SITES_VISITED.get();
+        }
+
+        @Override
+        public long getHierarchyResolutions() {
+            return HIERARCHY_RESOLUTIONS.get();
+        }
+
+        @Override
+        public long getJellyFilesScanned() {
+            return JELLY_FILES_SCANNED.get();
+        }
+
+        @Override
+        public long getMethodsRemoved() {
+            return METHODS_REMOVED.get();
+        }
+
+        @Override
+        public int getAnalyzedFiles() {
+            return FILES.size();
+        }
+
+        @Override
+        public Map<String, Long> getPhaseMillis() {
+            synchronized (PHASE_MILLIS) {
+                return new LinkedHashMap<>(PHASE_MILLIS);
+            }
+        }
+    }
+
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(),
+                    new ObjectName("org.jenkinsci.unusedcode:type=Metrics"));
+        } catch (final JMException e) {
+            Log.log("unable to register metrics in jmx, because " + e.toString());
+        }
+    }
+
+    static long getCurrentThreadCpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Records the duration of a phase, from startNanos (of System.nanoTime()) to now.
+     */
+    public static void endPhase(String phase, long startNanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        synchronized (PHASE_MILLIS) {
+            PHASE_MILLIS.put(phase, millis);
+        }
+    }
+
+    static void addBytesDownloaded(long bytes) {
+        BYTES_DOWNLOADED.addAndGet(bytes);
+    }
+
+    static void addBytesInflated(long bytes) {
+        BYTES_INFLATED.addAndGet(bytes);
+    }
+
+    static void addClassesParsed(int classes) {
+        CLASSES_PARSED.addAndGet(classes);
+    }
+
+    /**
+     * Ends the analysis of a file and adds its counters.
+     */
+    static void endFile(FileMetrics fileMetrics) {
+        fileMetrics.wallNanos = System.nanoTime() - fileMetrics.startNanos;
+        // with the cpu time of the parts run in other threads
+        fileMetrics.cpuNanos += getCurrentThreadCpuTime() - fileMetrics.startCpuNanos;
+        addBytesInflated(fileMetrics.bytesInflated);
+        addClassesParsed(fileMetrics.classesParsed);
+        CALL_SITES_VISITED.addAndGet(fileMetrics.callSitesVisited);
+        HIERARCHY_RESOLUTIONS.addAndGet(fileMetrics.hierarchyResolutions);
+        JELLY_FILES_SCANNED.addAndGet(fileMetrics.jellyFilesScanned);
+        METHODS_REMOVED.addAndGet(fileMetrics.methodsRemoved);
+        FILES.add(fileMetrics);
+    }
+
+    static List<FileMetrics> getFiles() {
+        return new ArrayList<>(FILES);
+    }
+
+    /**
+     * Writes the metrics to target/metrics.json, with the files sorted from the slowest.
+     */
+    public static void write() throws IOException {
+        final List<FileMetrics> files = getFiles();
+        Collections.sort(files, new Comparator<FileMetrics>() {
+            @Override
+            public int compare(FileMetrics o1, FileMetrics o2) {
+                return Long.compare(o2.wallNanos, o1.wallNanos);
+            }
+        });
+        final MetricsBean bean = new MetricsBean();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(JSON_FILE), StandardCharsets.UTF_8));
+        try {
+            writer.write("{\n\"phases\":{");
+            String separator = "";
+            for (final Map.Entry<String, Long> entry : bean.getPhaseMillis().entrySet()) {
+                writer.write(separator);
+                NdjsonReportWriter.writeString(writer, entry.getKey());
+                writer.write(":" + entry.getValue());
+                separator = ",";
+            }
+            writer.write("},\n\"counters\":{\"bytesDownloaded\":" + bean.getBytesDownloaded()
+                    + ",\"bytesInflated\":" + bean.getBytesInflated() + ",\"classesParsed\":"
+                    + bean.getClassesParsed() + ",\"callSitesVisited\":"
+                    + bean.getCallSitesVisited() + ",\"hierarchyResolutions\":"
+                    + bean.getHierarchyResolutions() + ",\"jellyFilesScanned\":"
+                    + bean.getJellyFilesScanned() + ",\"methodsRemoved\":"
+                    + bean.getMethodsRemoved() + ",\"analyzedFiles\":" + files.size() + "},\n");
+            writer.write("\"files\":[");
+            separator = "\n";
+            for (final FileMetrics file : files) {
+                writer.write(separator + "{\"name\":");
+                NdjsonReportWriter.writeString(writer, file.name);
+                writer.write(",\"size\":" + file.size + ",\"wallMillis\":"
+                        + TimeUnit.NANOSECONDS.toMillis(file.wallNanos) + ",\"cpuMillis\":"
+                        + TimeUnit.NANOSECONDS.toMillis(file.cpuNanos) + ",\"summaryReused\":"
+                        + file.summaryReused + ",\"bytesInflated\":" + file.bytesInflated
+                        + ",\"classesParsed\":" + file.classesParsed + ",\"callSitesVisited\":"
+                        + file.callSitesVisited + ",\"hierarchyResolutions\":"
+                        + file.hierarchyResolutions + ",\"jellyFilesScanned\":"
+                        + file.jellyFilesScanned + ",\"methodsRemoved\":" + file.methodsRemoved
+                        + ",\"nestedJarsReused\":" + file.nestedJarsReused + "}");
+                separator = ",\n";
+            }
+            writer.write("]\n}\n");
+        } finally {
+            writer.close();
+        }
+        Log.log("Metrics written to " + JSON_FILE.getPath());
+    }
+}
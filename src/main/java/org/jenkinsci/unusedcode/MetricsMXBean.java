@@ -0,0 +1,29 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.Map;
+
+/**
+ * Metrics of the run in progress, in jmx as "org.jenkinsci.unusedcode:type=Metrics".
+ */
+public interface MetricsMXBean {
+    long getBytesDownloaded();
+
+    long getBytesInflated();
+
+    long getClassesParsed();
+
+    long getCallSitesVisited();
+
+    long getHierarchyResolutions();
+
+    long getJellyFilesScanned();
+
+    long getMethodsRemoved();
+
+    int getAnalyzedFiles();
+
+    /**
+     * @return duration in milliseconds of each phase already ended
+     */
+    Map<String, Long> getPhaseMillis();
+}
@@ -0,0 +1,62 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes one json object per line, such as
+ * {"class":"hudson.model.Run","method":"getUrl","descriptor":"()Ljava/lang/String;",...}.
+ */
+class NdjsonReportWriter implements ReportWriter {
+    private final Writer writer;
+
+    NdjsonReportWriter(File file) throws IOException {
+        super();
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(String className, String methodName, String desc, String signature)
+            throws IOException {
+        writer.write("{\"class\":");
+        writeString(className.replace('/', '.'));
+        writer.write(",\"method\":");
+        writeString(methodName);
+        writer.write(",\"descriptor\":");
+        writeString(desc);
+        writer.write(",\"signature\":");
+        writeString(signature);
+        writer.write("}\n");
+    }
+
+    private void writeString(String string) throws IOException {
+        writeString(writer, string);
+    }
+
+    static void writeString(Writer writer, String string) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < ' ') {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
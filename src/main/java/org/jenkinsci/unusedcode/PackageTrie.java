@@ -0,0 +1,120 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of prefixes of class names, in a trie of chars, to know in O(length of the name) if a class
+ * name starts with one of the prefixes.
+ */
+class PackageTrie {
+    private final Node root = new Node();
+    private int size;
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node getChild(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(char c) {
+            Node child = getChild(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the name starts with one of the prefixes
+     */
+    boolean matchesPrefixOf(String name) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            if (node.terminal) {
+                return true;
+            }
+            node = node.getChild(name.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    void add(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        if (!node.terminal) {
+            node.terminal = true;
+            size++;
+        }
+    }
+
+    /**
+     * Adds a prefix and removes the prefixes which start with it, since they are now useless.
+     */
+    void addAndRemoveLongerPrefixes(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        size -= countTerminals(node);
+        node.keys = new char[0];
+        node.children = new Node[0];
+        node.terminal = true;
+        size++;
+    }
+
+    /**
+     * @return the prefixes, in no particular order
+     */
+    List<String> getPrefixes() {
+        final List<String> prefixes = new ArrayList<>(size);
+        addPrefixes(root, new StringBuilder(), prefixes);
+        return prefixes;
+    }
+
+    private static void addPrefixes(Node node, StringBuilder prefix, List<String> output) {
+        if (node.terminal) {
+            output.add(prefix.toString());
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            prefix.append(node.keys[i]);
+            addPrefixes(node.children[i], prefix, output);
+            prefix.setLength(prefix.length() - 1);
+        }
+    }
+
+    private static int countTerminals(Node node) {
+        int count = node.terminal ? 1 : 0;
+        for (final Node child : node.children) {
+            count += countTerminals(child);
+        }
+        return count;
+    }
+}
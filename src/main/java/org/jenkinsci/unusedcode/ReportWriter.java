@@ -0,0 +1,18 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Output of the unused methods, which receives them one at a time, sorted.
+ */
+interface ReportWriter extends Closeable {
+    /**
+     * @param className class name such as "hudson/model/Run"
+     * @param methodName method name such as "getUrl" or "&lt;init&gt;"
+     * @param desc method descriptor such as "()Ljava/lang/String;"
+     * @param signature readable signature as in the html report
+     */
+    void write(String className, String methodName, String desc, String signature)
+            throws IOException;
+}
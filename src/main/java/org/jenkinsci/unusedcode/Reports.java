@@ -1,33 +1,177 @@
 package org.jenkinsci.unusedcode;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Reports {
+    // relative to user dir, next to output.html
+    private static final File REPORTS_DIRECTORY = new File("target");
+    private static final List<String> REPORT_FORMATS = Arrays.asList("ndjson", "csv", "binary");
+
     private final UpdateCenter updateCenter;
     private final Indexer indexer;
+    private final List<String> reportFormats;
 
-    public Reports(UpdateCenter updateCenter, Indexer indexer) {
+    public Reports(UpdateCenter updateCenter, Indexer indexer, List<String> reportFormats) {
         super();
+        checkReportFormats(reportFormats);
         this.updateCenter = updateCenter;
         this.indexer = indexer;
+        this.reportFormats = reportFormats;
+    }
+
+    /**
+     * Checks the formats of -Dunusedcode.reportFormats, before the analysis.
+     */
+    public static void checkReportFormats(List<String> reportFormats) {
+        for (final String reportFormat : reportFormats) {
+            if (!REPORT_FORMATS.contains(reportFormat)) {
+                throw new IllegalArgumentException("unknown report format: " + reportFormat
+                        + ", expected one of " + REPORT_FORMATS);
+            }
+        }
     }
 
-    public void report() {
+    public void report() throws IOException {
+        final JfrEvent event = JfrEvent.begin(JfrEvent.Type.REPORT);
         log("ignored plugins : " + Analyzer.IGNORED_PLUGINS);
         log("");
 
-        log("<h3 id=unusedMethods>Unused methods in Jenkins</h3>");
-        final Set<String> methods = new TreeSet<>(indexer.getMethods());
-        for (final String method : methods) {
-            log(formatMethod(method));
+        final List<JenkinsFile> cores = updateCenter.getCores();
+        for (int version = 0; version < cores.size(); version++) {
+            // the first version is reported as before, the others with their version
+            final String suffix = version == 0 ? "" : "-" + cores.get(version).getVersion();
+            log("<h3 id=unusedMethods" + suffix + ">Unused methods in " + getJenkinsLabel(version)
+                    + "</h3>");
+            reportUnusedMethods(indexer.getUnusedMethods(version), createReportWriters(suffix));
         }
         log("");
         log("<h3 id=summary>Summary</h3>");
         log(updateCenter.getPlugins().size() + " published plugins");
-        log(methods.size()
-                + " unused methods in Jenkins, except getters, setters, except deprecated classes and methods");
+        for (int version = 0; version < cores.size(); version++) {
+            log(indexer.getUnusedMethods(version).cardinality() + " unused methods in "
+                    + getJenkinsLabel(version)
+                    + ", except getters, setters, except deprecated classes and methods");
+        }
+        if (cores.size() > 1) {
+            log(countUnusedInAllVersions()
+                    + " methods unused in all the analyzed core versions which have them");
+        }
         log("Unused deprecated classes, methods and fields are listed in the <a href='https://ci.jenkins-ci.org/view/All/job/Reporting/job/infra_deprecated-usage-in-plugins/lastSuccessfulBuild/artifact/target/output.html#deprecatedApiNotUsed'> deprecated-usage-in-plugins job </a>");
+        event.commit("report", null, 0, 0, 0);
+    }
+
+    private String getJenkinsLabel(int version) {
+        final List<JenkinsFile> cores = updateCenter.getCores();
+        return cores.size() == 1 ? "Jenkins" : "Jenkins " + cores.get(version).getVersion();
+    }
+
+    private int countUnusedInAllVersions() {
+        int count = 0;
+        for (int methodId = 0; methodId < indexer.getMethodCount(); methodId++) {
+            final int versionMask = indexer.getVersionMask(methodId);
+            boolean unused = true;
+            for (int version = 0; version < indexer.getVersionCount() && unused; version++) {
+                unused = (versionMask & 1 << version) == 0
+                        || indexer.getUnusedMethods(version).get(methodId);
+            }
+            if (unused) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void reportUnusedMethods(AtomicBitSet unusedMethods,
+            Map<ReportWriter, File> reportWriters) throws IOException {
+        boolean written = false;
+        try {
+            // method ids are sorted like the methods
+            int methodId = unusedMethods.nextSetBit(0);
+            while (methodId >= 0) {
+                final String method = indexer.getMethod(methodId);
+                final int descStart = method.indexOf('(');
+                final int nameStart = method.lastIndexOf(Indexer.SEPARATOR, descStart) + 1;
+                final String className = method.substring(0, nameStart - 1);
+                final String methodName = method.substring(nameStart, descStart);
+                final String desc = method.substring(descStart);
+                final String signature = formatMethod(method);
+                for (final ReportWriter reportWriter : reportWriters.keySet()) {
+                    reportWriter.write(className, methodName, desc, signature);
+                }
+                methodId = unusedMethods.nextSetBit(methodId + 1);
+            }
+            written = true;
+        } finally {
+            closeReportWriters(reportWriters, written);
+        }
+    }
+
+    // closes every writer even if one fails, and throws the first failure only if nothing
+    // else failed before
+    private static void closeReportWriters(Map<ReportWriter, File> reportWriters,
+            boolean written) throws IOException {
+        IOException closeException = null;
+        for (final Map.Entry<ReportWriter, File> entry : reportWriters.entrySet()) {
+            try {
+                entry.getKey().close();
+                if (written && entry.getValue() != null) {
+                    log("Report written to " + entry.getValue().getPath());
+                }
+            } catch (final IOException e) {
+                if (closeException == null) {
+                    closeException = e;
+                } else {
+                    closeException.addSuppressed(e);
+                }
+            }
+        }
+        if (written && closeException != null) {
+            throw closeException;
+        }
+    }
+
+    // html in the log, and the formats of -Dunusedcode.reportFormats=ndjson,csv,binary
+    // the file of each writer, or null for the html log
+    private Map<ReportWriter, File> createReportWriters(String suffix) throws IOException {
+        final Map<ReportWriter, File> reportWriters = new LinkedHashMap<>();
+        reportWriters.put(new ReportWriter() {
+            @Override
+            public void write(String className, String methodName, String desc,
+                    String signature) {
+                log(signature);
+            }
+
+            @Override
+            public void close() {
+                // the log is closed at the end
+            }
+        }, null);
+        boolean created = false;
+        try {
+            for (final String reportFormat : reportFormats) {
+                final File file = new File(REPORTS_DIRECTORY,
+                        "unused-methods" + suffix + '.' + reportFormat);
+                if ("ndjson".equals(reportFormat)) {
+                    reportWriters.put(new NdjsonReportWriter(file), file);
+                } else if ("csv".equals(reportFormat)) {
+                    reportWriters.put(new CsvReportWriter(file), file);
+                } else {
+                    reportWriters.put(new BinaryReportWriter(file), file);
+                }
+            }
+            created = true;
+        } finally {
+            if (!created) {
+                // the writers already opened
+                closeReportWriters(reportWriters, false);
+            }
+        }
+        return reportWriters;
     }
 
     private static String formatMethod(String method) {
@@ -1,41 +1,81 @@
 package org.jenkinsci.unusedcode;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.net.URI;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.xml.sax.SAXException;
 
 public class UpdateCenter {
-    private final URL updateCenterUrl;
+    /**
+     * Choice of the plugin versions, when a plugin is in several update centers with different
+     * versions.
+     */
+    public enum PluginVersions {
+        /** The highest version of the plugin. */
+        NEWEST,
+        /** The version of the first update center which has the plugin. */
+        FIRST,
+        /** Each different version of the plugin. */
+        ALL;
+    }
+
     private final JenkinsFile core;
+    // the core of the update center, then the other core versions to analyze
+    private final List<JenkinsFile> cores = new ArrayList<>();
     private final List<JenkinsFile> plugins = new ArrayList<>();
+    private final BlockingQueue<JenkinsFile> downloadedPlugins = new LinkedBlockingQueue<>();
+    private int remainingPlugins;
+    private long downloadsStartNanos;
 
     public UpdateCenter(URL updateCenterUrl)
             throws IOException, ParserConfigurationException, SAXException {
-        super();
-        this.updateCenterUrl = updateCenterUrl;
-        final String string = getUpdateCenterJson();
-
-        final JSONObject jsonRoot = new JSONObject(string);
-        final JSONObject jsonCore = jsonRoot.getJSONObject("core");
-        core = parse(jsonCore);
+        this(Collections.singletonList(updateCenterUrl), PluginVersions.NEWEST);
+    }
 
-        final JSONObject jsonPlugins = jsonRoot.getJSONObject("plugins");
-        for (final Object pluginId : jsonPlugins.keySet()) {
-            final JSONObject jsonPlugin = jsonPlugins.getJSONObject(pluginId.toString());
-            final JenkinsFile plugin = parse(jsonPlugin);
-            plugins.add(plugin);
+    /**
+     * Merges the plugins of several update centers (for example the stable and the experimental
+     * ones), the core being the one of the first update center. A file of a plugin listed by
+     * several update centers, with the same checksum, is downloaded and analyzed only once.
+     */
+    public UpdateCenter(List<URL> updateCenterUrls, PluginVersions pluginVersions)
+            throws IOException, ParserConfigurationException, SAXException {
+        super();
+        // versions of each plugin, in the order of the update centers
+        final Map<String, List<JenkinsFile>> pluginVersionsByName = new LinkedHashMap<>();
+        JenkinsFile firstCore = null;
+        for (final URL updateCenterUrl : updateCenterUrls) {
+            final JenkinsFile updateCenterCore = parse(updateCenterUrl, pluginVersionsByName);
+            if (firstCore == null) {
+                firstCore = updateCenterCore;
+            }
+        }
+        core = firstCore;
+        cores.add(core);
+        for (final List<JenkinsFile> versions : pluginVersionsByName.values()) {
+            plugins.addAll(selectVersions(versions, pluginVersions));
         }
         final Comparator<JenkinsFile> comparator = new Comparator<JenkinsFile>() {
             @Override
@@ -46,46 +86,222 @@ public class UpdateCenter {
         Collections.sort(plugins, comparator);
     }
 
-    private String getUpdateCenterJson() throws IOException, MalformedURLException {
-        final byte[] updateCenterData = new HttpGet(updateCenterUrl).read();
-        final String string = new String(updateCenterData, StandardCharsets.UTF_8)
-                .replace("updateCenter.post(", "");
-        return string;
+    private static JenkinsFile parse(URL updateCenterUrl,
+            final Map<String, List<JenkinsFile>> pluginVersionsByName)
+            throws IOException, ParserConfigurationException, SAXException {
+        final File updateCenterFile = getUpdateCenterFile(updateCenterUrl);
+        final JenkinsFile[] coreHolder = new JenkinsFile[1];
+        final Reader reader = new InputStreamReader(
+                new BufferedInputStream(new FileInputStream(updateCenterFile), 64 * 1024),
+                StandardCharsets.UTF_8);
+        try {
+            new UpdateCenterParser(reader).parse(new UpdateCenterParser.Listener() {
+                @Override
+                public void core(JenkinsFile jenkinsCore) {
+                    coreHolder[0] = jenkinsCore;
+                }
+
+                @Override
+                public void plugin(JenkinsFile plugin) {
+                    List<JenkinsFile> versions = pluginVersionsByName.get(plugin.getName());
+                    if (versions == null) {
+                        versions = new ArrayList<>(1);
+                        pluginVersionsByName.put(plugin.getName(), versions);
+                    }
+                    // a file with the same content is downloaded and analyzed only once
+                    for (final JenkinsFile version : versions) {
+                        if (version.hasSameContent(plugin)) {
+                            return;
+                        }
+                    }
+                    // another content with the same version, such as a rebuild
+                    for (final JenkinsFile version : versions) {
+                        if (version.getVersion().equals(plugin.getVersion())) {
+                            plugin.setVersionDirectoryOfContent();
+                            break;
+                        }
+                    }
+                    versions.add(plugin);
+                }
+            });
+        } finally {
+            reader.close();
+        }
+        if (coreHolder[0] == null) {
+            throw new IOException("core not found in " + updateCenterUrl);
+        }
+        return coreHolder[0];
     }
 
-    private JenkinsFile parse(JSONObject jsonObject) throws MalformedURLException, JSONException {
-        final String wiki;
-        if (jsonObject.has("wiki")) {
-            wiki = jsonObject.getString("wiki");
-        } else {
-            wiki = null;
+    private static List<JenkinsFile> selectVersions(List<JenkinsFile> versions,
+            PluginVersions pluginVersions) {
+        if (versions.size() == 1 || pluginVersions == PluginVersions.FIRST) {
+            return versions.subList(0, 1);
+        } else if (pluginVersions == PluginVersions.NEWEST) {
+            JenkinsFile newest = versions.get(0);
+            for (final JenkinsFile version : versions) {
+                if (compareVersions(version.getVersion(), newest.getVersion()) > 0) {
+                    newest = version;
+                }
+            }
+            return Collections.singletonList(newest);
+        }
+        // the versions are in the directory of the plugin, and the download of one version
+        // does not delete the others
+        final Set<String> selectedVersions = new HashSet<>();
+        for (final JenkinsFile version : versions) {
+            selectedVersions.add(version.getVersionDirectory());
+        }
+        for (final JenkinsFile version : versions) {
+            version.setSelectedVersions(selectedVersions);
         }
-        return new JenkinsFile(jsonObject.getString("name"), jsonObject.getString("version"),
-                jsonObject.getString("url"), wiki);
+        return versions;
     }
 
-    public void download() throws Exception {
-        // download in parallel
-        core.startDownloadIfNotExists();
-        for (final JenkinsFile plugin : plugins) {
-            plugin.startDownloadIfNotExists();
+    /**
+     * Compares versions such as 1.2, 1.10.1 or 2.0-beta-1: the numbers are compared as numbers
+     * and a qualifier after the numbers is before the version without qualifier.
+     */
+    static int compareVersions(String version1, String version2) {
+        final String[] tokens1 = version1.split("[.-]");
+        final String[] tokens2 = version2.split("[.-]");
+        for (int i = 0; i < Math.min(tokens1.length, tokens2.length); i++) {
+            final boolean numeric1 = isNumeric(tokens1[i]);
+            final boolean numeric2 = isNumeric(tokens2[i]);
+            final int result;
+            if (numeric1 && numeric2) {
+                result = new BigInteger(tokens1[i]).compareTo(new BigInteger(tokens2[i]));
+            } else if (numeric1 != numeric2) {
+                result = numeric1 ? 1 : -1;
+            } else {
+                result = tokens1[i].compareTo(tokens2[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (tokens1.length == tokens2.length) {
+            return 0;
+        } else if (tokens1.length > tokens2.length) {
+            return isNumeric(tokens1[tokens2.length]) ? 1 : -1;
+        }
+        return isNumeric(tokens2[tokens1.length]) ? -1 : 1;
+    }
+
+    private static boolean isNumeric(String token) {
+        if (token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * @return the update-center.json file if the url is a local file, or else a copy in the work
+     *         directory which is downloaded again only if it was modified
+     */
+    private static File getUpdateCenterFile(URL updateCenterUrl) throws IOException {
+        if ("file".equals(updateCenterUrl.getProtocol())) {
+            try {
+                final URI uri = updateCenterUrl.toURI();
+                // "file:target/update-center.json" is relative to user dir
+                return uri.isOpaque() ? new File(uri.getSchemeSpecificPart()) : new File(uri);
+            } catch (final URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        JenkinsFile.WORK_DIRECTORY.mkdirs();
+        final File file = new File(JenkinsFile.WORK_DIRECTORY, "update-center-"
+                + Integer.toHexString(updateCenterUrl.toString().hashCode()) + ".json");
+        if (!new HttpGet(updateCenterUrl).copyIfModified(file)) {
+            Log.log(updateCenterUrl + " not modified since the last run");
+        }
+        return file;
+    }
+
+    /**
+     * Adds another core version to download and to analyze, for example the last LTS.
+     */
+    public void addCore(String version, String url) throws MalformedURLException {
+        // the name is not "core", so that the download does not delete the other version
+        cores.add(new JenkinsFile("core-" + version, version, url, core.getWiki()));
+    }
+
+    public void download() throws Exception {
+        startDownloads();
         // wait end of downloads
-        core.waitDownload();
-        for (final JenkinsFile plugin : new ArrayList<>(plugins)) {
+        waitCoreDownloads();
+        JenkinsFile plugin = nextDownloadedPlugin();
+        while (plugin != null) {
+            plugin = nextDownloadedPlugin();
+        }
+    }
+
+    /**
+     * Starts to download in parallel the core and the plugins which are not already downloaded.
+     */
+    public void startDownloads() {
+        downloadsStartNanos = System.nanoTime();
+        for (final JenkinsFile jenkinsCore : cores) {
+            jenkinsCore.startDownloadIfNotExists();
+        }
+        remainingPlugins = plugins.size();
+        final List<JenkinsFile> pluginsToDownload = new ArrayList<>(plugins);
+        for (final JenkinsFile plugin : pluginsToDownload) {
+            plugin.startDownloadIfNotExists(new Runnable() {
+                @Override
+                public void run() {
+                    downloadedPlugins.add(plugin);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits the download of the next plugin, in the order of completion of downloads.
+     * A plugin not found is logged and removed from the plugins.
+     * @return the next downloaded plugin, or null if all plugins have been returned
+     */
+    public JenkinsFile nextDownloadedPlugin() throws Exception {
+        while (remainingPlugins > 0) {
+            final JenkinsFile plugin = downloadedPlugins.take();
+            remainingPlugins--;
             try {
                 plugin.waitDownload();
+                return plugin;
             } catch (final FileNotFoundException e) {
                 Log.log(e.toString());
                 plugins.remove(plugin);
             }
         }
+        if (downloadsStartNanos != 0) {
+            Metrics.endPhase("downloads", downloadsStartNanos);
+            downloadsStartNanos = 0;
+        }
+        return null;
+    }
+
+    public void waitCoreDownloads() throws Exception {
+        for (final JenkinsFile jenkinsCore : cores) {
+            jenkinsCore.waitDownload();
+        }
     }
 
     public JenkinsFile getCore() {
         return core;
     }
 
+    /**
+     * @return the core of the update center, then the other core versions added
+     */
+    public List<JenkinsFile> getCores() {
+        return cores;
+    }
+
     public List<JenkinsFile> getPlugins() {
         return plugins;
     }
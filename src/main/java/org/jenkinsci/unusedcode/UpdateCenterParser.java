@@ -0,0 +1,225 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+
+/**
+ * Streaming parser of update-center.json, which reads only the name, version, url, wiki and
+ * checksums of the core and of the plugins, without building a tree of the json document.
+ */
+class UpdateCenterParser {
+    private final Reader reader;
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private int next = -2;
+
+    interface Listener {
+        void core(JenkinsFile core);
+
+        void plugin(JenkinsFile plugin);
+    }
+
+    UpdateCenterParser(Reader reader) {
+        super();
+        this.reader = reader;
+    }
+
+    void parse(Listener listener) throws IOException {
+        // skip the "updateCenter.post(" prefix
+        while (peek() != '{') {
+            if (read() == -1) {
+                throw error("json object not found");
+            }
+        }
+        read();
+        if (skipWhitespaceAndPeek() == '}') {
+            read();
+            return;
+        }
+        do {
+            final String key = readKey();
+            if ("core".equals(key)) {
+                listener.core(readJenkinsFile());
+            } else if ("plugins".equals(key)) {
+                expect('{');
+                if (skipWhitespaceAndPeek() == '}') {
+                    read();
+                } else {
+                    do {
+                        readKey();
+                        listener.plugin(readJenkinsFile());
+                    } while (readCommaOrEnd('}'));
+                }
+            } else {
+                skipValue();
+            }
+        } while (readCommaOrEnd('}'));
+    }
+
+    private JenkinsFile readJenkinsFile() throws IOException {
+        String name = null;
+        String version = null;
+        String url = null;
+        String wiki = null;
+        String sha1 = null;
+        String sha256 = null;
+        expect('{');
+        if (skipWhitespaceAndPeek() == '}') {
+            read();
+        } else {
+            do {
+                final String key = readKey();
+                if (skipWhitespaceAndPeek() != '"') {
+                    skipValue();
+                } else if ("name".equals(key)) {
+                    name = readString();
+                } else if ("version".equals(key)) {
+                    version = readString();
+                } else if ("url".equals(key)) {
+                    url = readString();
+                } else if ("wiki".equals(key)) {
+                    wiki = readString();
+                } else if ("sha1".equals(key)) {
+                    sha1 = readString();
+                } else if ("sha256".equals(key)) {
+                    sha256 = readString();
+                } else {
+                    skipValue();
+                }
+            } while (readCommaOrEnd('}'));
+        }
+        if (name == null || version == null || url == null) {
+            throw error("name, version or url not found for " + name);
+        }
+        try {
+            return new JenkinsFile(name, version, url, wiki, sha1, sha256);
+        } catch (final MalformedURLException e) {
+            throw error(e.toString());
+        }
+    }
+
+    private String readKey() throws IOException {
+        skipWhitespaceAndPeek();
+        final String key = readString();
+        expect(':');
+        return key;
+    }
+
+    private boolean readCommaOrEnd(char end) throws IOException {
+        final int c = skipWhitespaceAndPeek();
+        read();
+        if (c == ',') {
+            return true;
+        } else if (c == end) {
+            return false;
+        }
+        throw error("',' or '" + end + "' expected");
+    }
+
+    private void skipValue() throws IOException {
+        final int c = skipWhitespaceAndPeek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            read();
+            final char end = c == '{' ? '}' : ']';
+            if (skipWhitespaceAndPeek() == end) {
+                read();
+                return;
+            }
+            do {
+                if (c == '{') {
+                    readKey();
+                }
+                skipValue();
+            } while (readCommaOrEnd(end));
+        } else {
+            // number, true, false or null
+            while (peek() != -1 && peek() != ',' && peek() != '}' && peek() != ']'
+                    && !Character.isWhitespace(peek())) {
+                read();
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        stringBuilder.setLength(0);
+        int c = read();
+        while (c != '"') {
+            if (c == -1) {
+                throw error("unterminated string");
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                case 'b':
+                    stringBuilder.append('\b');
+                    break;
+                case 'f':
+                    stringBuilder.append('\f');
+                    break;
+                case 'n':
+                    stringBuilder.append('\n');
+                    break;
+                case 'r':
+                    stringBuilder.append('\r');
+                    break;
+                case 't':
+                    stringBuilder.append('\t');
+                    break;
+                case 'u':
+                    final char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        hex[i] = (char) read();
+                    }
+                    try {
+                        stringBuilder.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (final NumberFormatException e) {
+                        throw error("invalid unicode escape");
+                    }
+                    break;
+                case -1:
+                    throw error("unterminated string");
+                default:
+                    // '"', '\\' and '/'
+                    stringBuilder.append((char) c);
+                }
+            } else {
+                stringBuilder.append((char) c);
+            }
+            c = read();
+        }
+        return stringBuilder.toString();
+    }
+
+    private void expect(char expected) throws IOException {
+        if (skipWhitespaceAndPeek() != expected) {
+            throw error("'" + expected + "' expected");
+        }
+        read();
+    }
+
+    private int skipWhitespaceAndPeek() throws IOException {
+        while (peek() != -1 && Character.isWhitespace(peek())) {
+            read();
+        }
+        return peek();
+    }
+
+    private int peek() throws IOException {
+        if (next == -2) {
+            next = reader.read();
+        }
+        return next;
+    }
+
+    private int read() throws IOException {
+        final int c = peek();
+        next = -2;
+        return c;
+    }
+
+    private static IOException error(String message) {
+        return new IOException("Invalid update-center.json: " + message);
+    }
+}
@@ -0,0 +1,350 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Daemon mode, which keeps the index of jenkins core and the methods used by each file in memory
+ * after the analysis, and answers on localhost in json which files use a method, or the usage of
+ * the methods of a class or of a package, for example:
+ * http://localhost:8090/method?name=hudson.model.Run.getLog,
+ * http://localhost:8090/class?name=hudson.model.Run or
+ * http://localhost:8090/package?name=hudson.model.
+ * The directories of the plugins in the work directory are checked periodically: a new version
+ * of a plugin downloaded there is analyzed, and the usage of a version deleted from there, such as
+ * the previous version, is removed.
+ */
+class UsageDaemon {
+    private static final ThreadFactory RESCAN_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "unusedcode-rescan");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final Indexer indexer;
+    private final UsageIndex usageIndex;
+    private final List<String> coreVersions = new ArrayList<>();
+    // directories in the work directory which are not plugins
+    private final Set<String> coreNames = new HashSet<>();
+    // files of the plugins which are in the usage index, and files which failed
+    private final Set<File> analyzedFiles = new HashSet<>();
+    private final Set<File> failedFiles = new HashSet<>();
+    private final AtomicInteger rescans = new AtomicInteger();
+
+    UsageDaemon(UpdateCenter updateCenter, Indexer indexer, UsageIndex usageIndex) {
+        super();
+        this.indexer = indexer;
+        this.usageIndex = usageIndex;
+        for (final JenkinsFile core : updateCenter.getCores()) {
+            coreVersions.add(core.getVersion());
+            coreNames.add(core.getName());
+        }
+        for (final JenkinsFile plugin : updateCenter.getPlugins()) {
+            analyzedFiles.add(plugin.getFile());
+        }
+    }
+
+    void start(int port, long rescanSeconds) throws IOException {
+        final HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.start();
+        final ScheduledExecutorService rescanExecutor = Executors
+                .newSingleThreadScheduledExecutor(RESCAN_THREAD_FACTORY);
+        rescanExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                rescan();
+            }
+        }, rescanSeconds, rescanSeconds, TimeUnit.SECONDS);
+        Log.log("Daemon listening on http://localhost:" + server.getAddress().getPort() + '/');
+    }
+
+    /**
+     * Analyzes the versions of the plugins in the work directory which were not analyzed
+     * before, and removes the usage of the versions which were deleted.
+     */
+    void rescan() {
+        final File[] directories = JenkinsFile.WORK_DIRECTORY.listFiles();
+        if (directories == null) {
+            return;
+        }
+        for (final File directory : directories) {
+            if (!directory.isDirectory() || coreNames.contains(directory.getName())) {
+                continue;
+            }
+            for (final File file : getPluginFiles(directory)) {
+                if (analyzedFiles.contains(file) || failedFiles.contains(file)) {
+                    continue;
+                }
+                final Analyzer analyzer = new Analyzer(indexer, usageIndex);
+                try {
+                    analyzer.analyzePlugin(file, file.getParentFile().getName());
+                } catch (final Exception e) {
+                    Log.log(e.toString() + " on " + file.getName());
+                    failedFiles.add(file);
+                    continue;
+                }
+                analyzedFiles.add(file);
+                rescans.incrementAndGet();
+            }
+        }
+        final Iterator<File> iterator = analyzedFiles.iterator();
+        while (iterator.hasNext()) {
+            final File analyzedFile = iterator.next();
+            if (!analyzedFile.exists()) {
+                usageIndex.remove(analyzedFile.getName(), analyzedFile.getParentFile().getName());
+                iterator.remove();
+            }
+        }
+    }
+
+    // the directories of a plugin are named by version, like in JenkinsFile
+    private static List<File> getPluginFiles(File pluginDirectory) {
+        final List<File> pluginFiles = new ArrayList<>();
+        final File[] versionDirectories = pluginDirectory.listFiles();
+        if (versionDirectories == null) {
+            return pluginFiles;
+        }
+        for (final File versionDirectory : versionDirectories) {
+            final File[] files = versionDirectory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (final File file : files) {
+                if (JarReader.endsWith(file.getName(), ".hpi", ".jpi")) {
+                    pluginFiles.add(file);
+                }
+            }
+        }
+        return pluginFiles;
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final String name = getParameter(exchange, "name");
+        final StringWriter json = new StringWriter();
+        int status = 200;
+        if ("/status".equals(path)) {
+            writeStatus(json);
+        } else if (name == null
+                && ("/method".equals(path) || "/class".equals(path) || "/package".equals(path))) {
+            status = 400;
+            writeError(json, "parameter name is required");
+        } else if ("/method".equals(path)) {
+            writeMethods(json, toMethodPrefix(name));
+        } else if ("/class".equals(path)) {
+            writeMethods(json, name.replace('.', '/') + Indexer.SEPARATOR);
+        } else if ("/package".equals(path)) {
+            writePackage(json, name.replace('.', '/') + '/');
+        } else {
+            status = 404;
+            writeError(json, "unknown path, expected /method, /class, /package or /status");
+        }
+        final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        final OutputStream output = exchange.getResponseBody();
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String getParameter(HttpExchange exchange, String parameter)
+            throws UnsupportedEncodingException {
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (final String pair : query.split("&")) {
+                if (pair.startsWith(parameter + '=')) {
+                    final String value = URLDecoder.decode(pair.substring(parameter.length() + 1),
+                            "UTF-8").trim();
+                    return value.isEmpty() ? null : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the beginning of the keys of the methods, for a name such as
+     *         "hudson.model.Run.getLog" or "hudson.model.Run.getLog(I)Ljava/util/List;"
+     */
+    static String toMethodPrefix(String name) {
+        final int descStart = name.indexOf('(');
+        final String className = descStart >= 0 ? name.substring(0, descStart) : name;
+        final int nameStart = className.lastIndexOf('.') + 1;
+        final String desc = descStart >= 0 ? name.substring(descStart).replace('.', '/') : "(";
+        return Indexer.getMethodKey(className.substring(0, Math.max(nameStart - 1, 0))
+                .replace('.', '/'), className.substring(nameStart), desc);
+    }
+
+    /**
+     * @return id of the first method whose key is not before the prefix, the ids being in the
+     *         order of the keys
+     */
+    static int findFirstMethodId(Indexer indexer, String prefix) {
+        int low = 0;
+        int high = indexer.getMethodCount();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (indexer.getMethod(middle).compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void writeMethods(Writer json, String prefix) throws IOException {
+        json.write("{\"methods\":[");
+        String separator = "";
+        for (int methodId = findFirstMethodId(indexer, prefix); methodId < indexer.getMethodCount()
+                && indexer.getMethod(methodId).startsWith(prefix); methodId++) {
+            json.write(separator);
+            writeMethod(json, methodId);
+            separator = ",\n";
+        }
+        json.write("]}\n");
+    }
+
+    private void writeMethod(Writer json, int methodId) throws IOException {
+        final String method = indexer.getMethod(methodId);
+        final int descStart = method.indexOf('(');
+        final int nameStart = method.lastIndexOf(Indexer.SEPARATOR, descStart) + 1;
+        json.write("{\"class\":");
+        NdjsonReportWriter.writeString(json, method.substring(0, nameStart - 1).replace('/', '.'));
+        json.write(",\"method\":");
+        NdjsonReportWriter.writeString(json, method.substring(nameStart, descStart));
+        json.write(",\"descriptor\":");
+        NdjsonReportWriter.writeString(json, method.substring(descStart));
+        json.write(",\"coreVersions\":[");
+        writeVersions(json, methodId, false);
+        json.write("],\"unusedInCoreVersions\":[");
+        writeVersions(json, methodId, true);
+        json.write("],\"usedBy\":[");
+        String separator = "";
+        for (final UsageIndex.Usage usage : usageIndex.getUsers(methodId)) {
+            json.write(separator + "{\"file\":");
+            NdjsonReportWriter.writeString(json, usage.fileName);
+            json.write(",\"version\":");
+            writeNullableString(json, usage.version);
+            json.write('}');
+            separator = ",";
+        }
+        json.write("]}");
+    }
+
+    private void writeVersions(Writer json, int methodId, boolean unusedOnly) throws IOException {
+        final int versionMask = indexer.getVersionMask(methodId);
+        String separator = "";
+        for (int version = 0; version < coreVersions.size(); version++) {
+            if ((versionMask & 1 << version) != 0
+                    && (!unusedOnly || !usageIndex.isUsed(methodId, version))) {
+                json.write(separator);
+                writeNullableString(json, coreVersions.get(version));
+                separator = ",";
+            }
+        }
+    }
+
+    private void writePackage(Writer json, String prefix) throws IOException {
+        json.write("{\"classes\":[");
+        String separator = "";
+        int methodId = findFirstMethodId(indexer, prefix);
+        while (methodId < indexer.getMethodCount()
+                && indexer.getMethod(methodId).startsWith(prefix)) {
+            final String method = indexer.getMethod(methodId);
+            final String className = method.substring(0,
+                    method.indexOf(Indexer.SEPARATOR, prefix.length()));
+            int methods = 0;
+            int unused = 0;
+            while (methodId < indexer.getMethodCount()
+                    && indexer.getMethod(methodId).startsWith(className + Indexer.SEPARATOR)) {
+                methods++;
+                if (isUnused(methodId)) {
+                    unused++;
+                }
+                methodId++;
+            }
+            // the classes of the sub-packages are not in the package
+            if (className.indexOf('/', prefix.length()) < 0) {
+                json.write(separator + "{\"class\":");
+                NdjsonReportWriter.writeString(json, className.replace('/', '.'));
+                json.write(",\"methods\":" + methods + ",\"unused\":" + unused + '}');
+                separator = ",\n";
+            }
+        }
+        json.write("]}\n");
+    }
+
+    // unused in a core version which has the method
+    private boolean isUnused(int methodId) {
+        final int versionMask = indexer.getVersionMask(methodId);
+        for (int version = 0; version < coreVersions.size(); version++) {
+            if ((versionMask & 1 << version) != 0 && !usageIndex.isUsed(methodId, version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeStatus(Writer json) throws IOException {
+        json.write("{\"coreVersions\":[");
+        String separator = "";
+        for (final String coreVersion : coreVersions) {
+            json.write(separator);
+            writeNullableString(json, coreVersion);
+            separator = ",";
+        }
+        json.write("],\"methods\":" + indexer.getMethodCount() + ",\"analyzedFiles\":"
+                + usageIndex.getUsages().size() + ",\"rescannedPlugins\":" + rescans.get()
+                + "}\n");
+    }
+
+    private static void writeError(Writer json, String message) throws IOException {
+        json.write("{\"error\":");
+        NdjsonReportWriter.writeString(json, message);
+        json.write("}\n");
+    }
+
+    private static void writeNullableString(Writer json, String string) throws IOException {
+        if (string == null) {
+            json.write("null");
+        } else {
+            NdjsonReportWriter.writeString(json, string);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Methods of jenkins core used by each analyzed file, kept in memory by the daemon mode to find
+ * which files use a method. Unlike the unused methods of the {@link Indexer}, the usage of a
+ * file can be removed when a new version of the file is analyzed.
+ */
+final class UsageIndex {
+    private final ConcurrentMap<String, Usage> usages = new ConcurrentHashMap<>();
+    // for each method, the number of plugins which use it, and of cores of each version, updated
+    // with the usages so that isUsed does not read all of them
+    private final AtomicIntegerArray pluginUsageCounts;
+    private final AtomicIntegerArray[] coreUsageCounts;
+
+    UsageIndex(int methodCount, int coreVersionCount) {
+        super();
+        this.pluginUsageCounts = new AtomicIntegerArray(methodCount);
+        this.coreUsageCounts = new AtomicIntegerArray[coreVersionCount];
+        for (int coreVersion = 0; coreVersion < coreVersionCount; coreVersion++) {
+            coreUsageCounts[coreVersion] = new AtomicIntegerArray(methodCount);
+        }
+    }
+
+    /**
+     * Methods used by a version of a file, by calls or in jelly files. The bit set is not
+     * modified after {@link UsageIndex#put(Usage)}.
+     */
+    static final class Usage {
+        final String fileName;
+        final String version;
+        // index of the core version for a core, or -1 for a plugin
+        final int coreVersion;
+        final BitSet usedMethods;
+
+        Usage(String fileName, String version, int coreVersion, BitSet usedMethods) {
+            super();
+            this.fileName = fileName;
+            this.version = version;
+            this.coreVersion = coreVersion;
+            this.usedMethods = usedMethods;
+        }
+    }
+
+    private static String getKey(String fileName, String version) {
+        return fileName + ' ' + version;
+    }
+
+    void put(Usage usage) {
+        final Usage previous = usages.put(getKey(usage.fileName, usage.version), usage);
+        // counted before the previous usage is uncounted, so that a method used by both is
+        // never seen as unused
+        count(usage, 1);
+        if (previous != null) {
+            count(previous, -1);
+        }
+    }
+
+    void remove(String fileName, String version) {
+        final Usage previous = usages.remove(getKey(fileName, version));
+        if (previous != null) {
+            count(previous, -1);
+        }
+    }
+
+    private void count(Usage usage, int delta) {
+        final AtomicIntegerArray usageCounts = usage.coreVersion < 0 ? pluginUsageCounts
+                : coreUsageCounts[usage.coreVersion];
+        final BitSet usedMethods = usage.usedMethods;
+        for (int methodId = usedMethods.nextSetBit(0); methodId >= 0;
+                methodId = usedMethods.nextSetBit(methodId + 1)) {
+            usageCounts.addAndGet(methodId, delta);
+        }
+    }
+
+    Collection<Usage> getUsages() {
+        return usages.values();
+    }
+
+    /**
+     * @return the plugins and the cores which use the method
+     */
+    List<Usage> getUsers(int methodId) {
+        final List<Usage> users = new ArrayList<>();
+        for (final Usage usage : usages.values()) {
+            if (usage.usedMethods.get(methodId)) {
+                users.add(usage);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * @return true if the method is used by a plugin or by this core version
+     */
+    boolean isUsed(int methodId, int coreVersion) {
+        return pluginUsageCounts.get(methodId) > 0
+                || coreUsageCounts[coreVersion].get(methodId) > 0;
+    }
+}
@@ -0,0 +1,139 @@
+package org.jenkinsci.unusedcode;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of words which can be added from a range of chars, without allocation if the word is
+ * already in the set.
+ */
+class WordSet extends AbstractSet<String> {
+    private String[] table = new String[64];
+    private int size;
+
+    static int hash(char[] chars, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h ^ h >>> 16;
+    }
+
+    static int hash(String word) {
+        int h = 0;
+        for (int i = 0; i < word.length(); i++) {
+            h = 31 * h + word.charAt(i);
+        }
+        return h ^ h >>> 16;
+    }
+
+    private static boolean regionEquals(String word, char[] chars, int start, int end) {
+        if (word.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean add(char[] chars, int start, int end) {
+        final int mask = table.length - 1;
+        int slot = hash(chars, start, end) & mask;
+        String word = table[slot];
+        while (word != null) {
+            if (regionEquals(word, chars, start, end)) {
+                return false;
+            }
+            slot = slot + 1 & mask;
+            word = table[slot];
+        }
+        insert(new String(chars, start, end - start), slot);
+        return true;
+    }
+
+    @Override
+    public boolean add(String word) {
+        final int mask = table.length - 1;
+        int slot = hash(word) & mask;
+        String existing = table[slot];
+        while (existing != null) {
+            if (existing.equals(word)) {
+                return false;
+            }
+            slot = slot + 1 & mask;
+            existing = table[slot];
+        }
+        insert(word, slot);
+        return true;
+    }
+
+    private void insert(String word, int slot) {
+        table[slot] = word;
+        size++;
+        if (size * 2 > table.length) {
+            final String[] oldTable = table;
+            table = new String[oldTable.length * 2];
+            final int mask = table.length - 1;
+            for (final String oldWord : oldTable) {
+                if (oldWord != null) {
+                    int newSlot = hash(oldWord) & mask;
+                    while (table[newSlot] != null) {
+                        newSlot = newSlot + 1 & mask;
+                    }
+                    table[newSlot] = oldWord;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int index = next(0);
+
+            private int next(int from) {
+                int i = from;
+                while (i < table.length && table[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < table.length;
+            }
+
+            @Override
+            public String next() {
+                if (index >= table.length) {
+                    throw new NoSuchElementException();
+                }
+                final String word = table[index];
+                index = next(index + 1);
+                return word;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
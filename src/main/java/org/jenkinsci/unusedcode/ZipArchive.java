@@ -0,0 +1,436 @@
+package org.jenkinsci.unusedcode;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Zip (jar, war or hpi) read from its central directory in a {@link ByteBuffer}, which is either a
+ * memory-mapped file or the content of a nested jar. The entries are read directly from the
+ * buffer, so an uncompressed nested jar is read in place without copy. Entries can be read by
+ * several threads at the same time, each with its own inflater and chunk. The mapping of a file
+ * is released by {@link #close()}, after which the entries and the nested jars must not be read.
+ */
+public class ZipArchive implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final ByteBuffer buffer;
+    // mapping of the file, released by close (null for a nested jar)
+    private MappedByteBuffer mappedBuffer;
+    private final String[] names;
+    private final int[] methods;
+    private final long[] crcs;
+    private final long[] compressedSizes;
+    private final long[] sizes;
+    private final long[] localHeaderOffsets;
+
+    public ZipArchive(ByteBuffer buffer) throws ZipException {
+        super();
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int end = findEnd();
+            long count = getUnsignedShort(end + 10);
+            long centralDirectoryOffset = getUnsignedInt(end + 16);
+            if (count == 0xFFFF || centralDirectoryOffset == ZIP64_MAGIC) {
+                final int locator = end - 20;
+                if (locator >= 0 && this.buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                    final int zip64End = toInt(this.buffer.getLong(locator + 8));
+                    checkSignature(zip64End, ZIP64_END_SIGNATURE);
+                    count = this.buffer.getLong(zip64End + 32);
+                    centralDirectoryOffset = this.buffer.getLong(zip64End + 48);
+                }
+            }
+            final int size = toInt(count);
+            this.names = new String[size];
+            this.methods = new int[size];
+            this.crcs = new long[size];
+            this.compressedSizes = new long[size];
+            this.sizes = new long[size];
+            this.localHeaderOffsets = new long[size];
+            readCentralDirectory(toInt(centralDirectoryOffset));
+        } catch (final IndexOutOfBoundsException | BufferUnderflowException e) {
+            final ZipException zipException = new ZipException("invalid zip central directory");
+            zipException.initCause(e);
+            throw zipException;
+        }
+    }
+
+    /**
+     * Memory-maps a file. The mapping stays valid after the file channel is closed, until
+     * {@link #close()}.
+     */
+    public static ZipArchive map(File file) throws IOException {
+        final MappedByteBuffer mappedBuffer;
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+        try {
+            final ZipArchive archive = new ZipArchive(mappedBuffer);
+            archive.mappedBuffer = mappedBuffer;
+            return archive;
+        } catch (final ZipException e) {
+            unmap(mappedBuffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the mapping of the file now, instead of when the buffer is garbage collected, so
+     * that the file can be deleted or replaced on Windows.
+     */
+    @Override
+    public void close() {
+        if (mappedBuffer != null) {
+            unmap(mappedBuffer);
+            mappedBuffer = null;
+        }
+    }
+
+    /**
+     * Releases a mapping with the cleaner of the jdk, if it is available. The buffer and its
+     * duplicates must not be read after.
+     */
+    static void unmap(MappedByteBuffer mappedBuffer) {
+        try {
+            // java 9+
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class)
+                    .invoke(unsafeField.get(null), mappedBuffer);
+        } catch (final NoSuchMethodException e) {
+            // java 7 and 8
+            try {
+                final Method cleanerMethod = mappedBuffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(mappedBuffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (final ReflectiveOperationException | RuntimeException e2) {
+                // the mapping will be released by the garbage collector
+                return;
+            }
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // the mapping will be released by the garbage collector
+            return;
+        }
+    }
+
+    private int findEnd() throws ZipException {
+        final int last = buffer.limit() - END_SIZE;
+        final int first = Math.max(0, last - 0xFFFF);
+        for (int i = last; i >= first; i--) {
+            if (buffer.getInt(i) == END_SIGNATURE) {
+                return i;
+            }
+        }
+        throw new ZipException("zip END header not found");
+    }
+
+    private void readCentralDirectory(int offset) throws ZipException {
+        byte[] nameBytes = new byte[256];
+        int position = offset;
+        for (int i = 0; i < names.length; i++) {
+            checkSignature(position, CENTRAL_HEADER_SIGNATURE);
+            methods[i] = getUnsignedShort(position + 10);
+            crcs[i] = getUnsignedInt(position + 16);
+            compressedSizes[i] = getUnsignedInt(position + 20);
+            sizes[i] = getUnsignedInt(position + 24);
+            final int nameLength = getUnsignedShort(position + 28);
+            final int extraLength = getUnsignedShort(position + 30);
+            final int commentLength = getUnsignedShort(position + 32);
+            localHeaderOffsets[i] = getUnsignedInt(position + 42);
+            if (nameBytes.length < nameLength) {
+                nameBytes = new byte[nameLength];
+            }
+            final ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(nameBytes, 0, nameLength);
+            names[i] = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+            readZip64Extra(i, position + 46 + nameLength, extraLength);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private void readZip64Extra(int i, int extraOffset, int extraLength) {
+        if (sizes[i] != ZIP64_MAGIC && compressedSizes[i] != ZIP64_MAGIC
+                && localHeaderOffsets[i] != ZIP64_MAGIC) {
+            return;
+        }
+        int position = extraOffset;
+        final int end = extraOffset + extraLength;
+        while (position + 4 <= end) {
+            final int tag = getUnsignedShort(position);
+            final int length = getUnsignedShort(position + 2);
+            if (tag == 0x0001) {
+                int valuePosition = position + 4;
+                if (sizes[i] == ZIP64_MAGIC) {
+                    sizes[i] = buffer.getLong(valuePosition);
+                    valuePosition += 8;
+                }
+                if (compressedSizes[i] == ZIP64_MAGIC) {
+                    compressedSizes[i] = buffer.getLong(valuePosition);
+                    valuePosition += 8;
+                }
+                if (localHeaderOffsets[i] == ZIP64_MAGIC) {
+                    localHeaderOffsets[i] = buffer.getLong(valuePosition);
+                }
+                return;
+            }
+            position += 4 + length;
+        }
+    }
+
+    private void checkSignature(int position, int signature) throws ZipException {
+        if (buffer.getInt(position) != signature) {
+            throw new ZipException("invalid zip header signature at " + position);
+        }
+    }
+
+    private int getUnsignedShort(int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private long getUnsignedInt(int position) {
+        return buffer.getInt(position) & ZIP64_MAGIC;
+    }
+
+    private static int toInt(long value) throws ZipException {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new ZipException("zip too large: " + value);
+        }
+        return (int) value;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @return crc-32 of the uncompressed content of the entry, from the central directory
+     */
+    public long getCrc(int index) {
+        return crcs[index];
+    }
+
+    public boolean isStored(int index) {
+        return methods[index] == STORED;
+    }
+
+    /**
+     * @return compressed data of the entry, without copy
+     */
+    public ByteBuffer getRawData(int index) throws ZipException {
+        if (methods[index] != STORED && methods[index] != DEFLATED) {
+            throw new ZipException("unsupported compression method " + methods[index] + " for "
+                    + names[index]);
+        }
+        try {
+            final int localHeader = toInt(localHeaderOffsets[index]);
+            checkSignature(localHeader, LOCAL_HEADER_SIGNATURE);
+            final int start = localHeader + 30 + getUnsignedShort(localHeader + 26)
+                    + getUnsignedShort(localHeader + 28);
+            final ByteBuffer data = buffer.duplicate();
+            data.position(start);
+            data.limit(start + toInt(compressedSizes[index]));
+            return data.slice();
+        } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+            final ZipException zipException = new ZipException("invalid entry " + names[index]);
+            zipException.initCause(e);
+            throw zipException;
+        }
+    }
+
+    /**
+     * @param inflater Inflater (with nowrap), reset and reused for each entry
+     * @param chunk buffer of compressed data given to the inflater
+     * @return InputStream of the entry, valid until the inflater is used for another entry
+     */
+    public InputStream getInputStream(int index, Inflater inflater, byte[] chunk)
+            throws ZipException {
+        final ByteBuffer data = getRawData(index);
+        if (isStored(index)) {
+            return new StoredInputStream(data);
+        }
+        inflater.reset();
+        return new InflatedInputStream(data, inflater, chunk);
+    }
+
+    /**
+     * Opens a nested jar. If it is stored, it is read in place. Otherwise, it is inflated in the
+     * buffer of the holder, which is reused for the next nested jar.
+     */
+    public ZipArchive openNested(int index, Inflater inflater, byte[] chunk,
+            BufferHolder bufferHolder) throws IOException {
+        if (isStored(index)) {
+            return new ZipArchive(getRawData(index));
+        }
+        final InputStream input = getInputStream(index, inflater, chunk);
+        byte[] bytes = bufferHolder.getBuffer(toInt(sizes[index]) + 1);
+        int length = 0;
+        int len = input.read(bytes, length, bytes.length - length);
+        while (len != -1) {
+            length += len;
+            if (length == bytes.length) {
+                // the size in the central directory was wrong
+                bytes = bufferHolder.grow(length);
+            }
+            len = input.read(bytes, length, bytes.length - length);
+        }
+        return new ZipArchive(ByteBuffer.wrap(bytes, 0, length).slice());
+    }
+
+    /**
+     * Reusable buffer to inflate nested jars.
+     */
+    public static class BufferHolder {
+        private byte[] buffer = new byte[0];
+
+        byte[] getBuffer(int minimumSize) {
+            if (buffer.length < minimumSize) {
+                buffer = new byte[minimumSize];
+            }
+            return buffer;
+        }
+
+        int getCapacity() {
+            return buffer.length;
+        }
+
+        byte[] grow(int length) {
+            final byte[] newBuffer = new byte[Math.max(length * 2, 1024)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+            return buffer;
+        }
+    }
+
+    private static class StoredInputStream extends InputStream {
+        private final ByteBuffer data;
+
+        StoredInputStream(ByteBuffer data) {
+            super();
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            return data.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            final int length = Math.min(len, data.remaining());
+            data.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return data.remaining();
+        }
+    }
+
+    private static class InflatedInputStream extends InputStream {
+        private final ByteBuffer data;
+        private final Inflater inflater;
+        private final byte[] chunk;
+        private boolean dummyByteGiven;
+
+        InflatedInputStream(ByteBuffer data, Inflater inflater, byte[] chunk) {
+            super();
+            this.data = data;
+            this.inflater = inflater;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            if (read(b, 0, 1) == -1) {
+                return -1;
+            }
+            return b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                int n = inflater.inflate(b, off, len);
+                while (n == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        fill();
+                    }
+                    n = inflater.inflate(b, off, len);
+                }
+                return n;
+            } catch (final DataFormatException e) {
+                final String message = e.getMessage();
+                throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+            }
+        }
+
+        private void fill() throws EOFException {
+            if (data.hasRemaining()) {
+                final int length = Math.min(chunk.length, data.remaining());
+                data.get(chunk, 0, length);
+                inflater.setInput(chunk, 0, length);
+            } else if (!dummyByteGiven) {
+                // like java.util.zip.ZipFile, an extra dummy byte is given at the end
+                dummyByteGiven = true;
+                chunk[0] = 0;
+                inflater.setInput(chunk, 0, 1);
+            } else {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+        }
+    }
+}
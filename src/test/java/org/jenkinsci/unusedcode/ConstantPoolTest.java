@@ -0,0 +1,241 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class ConstantPoolTest {
+    private static final String INITIALIZER = "Lhudson/init/Initializer;";
+    private static final String DATA_BOUND_CONSTRUCTOR =
+            "Lorg/kohsuke/stapler/DataBoundConstructor;";
+
+    /**
+     * Analyzer which only records the calls.
+     */
+    private static class RecordingAnalyzer extends Analyzer {
+        final Set<String> calls = new HashSet<>();
+
+        RecordingAnalyzer() throws IOException {
+            super(createIndexer());
+        }
+
+        private static Indexer createIndexer() throws IOException {
+            // an index of an empty jar
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new ZipOutputStream(output).close();
+            final Indexer indexer = new Indexer();
+            indexer.indexJar(new ByteArrayInputStream(output.toByteArray()));
+            return indexer;
+        }
+
+        @Override
+        void methodCalled(String className, String name, String desc) {
+            calls.add(Indexer.getMethodKey(className, name, desc));
+        }
+    }
+
+    /**
+     * Visitor of the code and of the annotations of the methods, as in Analyzer before
+     * ConstantPool.
+     */
+    private static class CodeVisitor extends ClassVisitor {
+        final Set<String> calls = new HashSet<>();
+        private String className;
+
+        CodeVisitor() {
+            super(Opcodes.ASM5);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                String superName, String[] interfaces) {
+            className = name;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, final String name, final String desc,
+                String signature, String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM5) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDesc,
+                        boolean visible) {
+                    if (INITIALIZER.equals(annotationDesc)
+                            || DATA_BOUND_CONSTRUCTOR.equals(annotationDesc)) {
+                        calls.add(Indexer.getMethodKey(className, name, desc));
+                    }
+                    return null;
+                }
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String methodName,
+                        String methodDesc, boolean itf) {
+                    calls.add(Indexer.getMethodKey(owner, methodName, methodDesc));
+                }
+            };
+        }
+    }
+
+    private static ClassWriter createClass() {
+        final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "p/Caller", null, "p/Base",
+                new String[] { "p/Itf" });
+        final MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "p/Base", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        final MethodVisitor run = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V",
+                null, null);
+        run.visitCode();
+        // Methodref
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "p/Base", "foo", "()V", false);
+        // InterfaceMethodref, with an interface call and a static call on an interface
+        run.visitVarInsn(Opcodes.ALOAD, 0);
+        run.visitInsn(Opcodes.ICONST_1);
+        run.visitMethodInsn(Opcodes.INVOKEINTERFACE, "p/Itf", "bar", "(I)Ljava/lang/String;",
+                true);
+        run.visitInsn(Opcodes.POP);
+        run.visitMethodInsn(Opcodes.INVOKESTATIC, "p/Itf", "create", "()Lp/Itf;", true);
+        run.visitInsn(Opcodes.POP);
+        // long and double constants use two indexes of the pool
+        run.visitLdcInsn(1234567890123L);
+        run.visitInsn(Opcodes.POP2);
+        run.visitLdcInsn(3.5d);
+        run.visitInsn(Opcodes.POP2);
+        run.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "abs", "(I)I", false);
+        // a field is not a call
+        run.visitFieldInsn(Opcodes.GETSTATIC, "p/Base", "field", "Ljava/lang/Object;");
+        run.visitInsn(Opcodes.POP);
+        run.visitInsn(Opcodes.RETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+        return classWriter;
+    }
+
+    private static void addAnnotatedMethod(ClassWriter classWriter, String name,
+            String annotationDesc) {
+        final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, name, "()V",
+                null, null);
+        method.visitAnnotation(annotationDesc, true).visitEnd();
+        method.visitCode();
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static ClassReader toClassReader(ClassWriter classWriter) {
+        classWriter.visitEnd();
+        return new ClassReader(classWriter.toByteArray());
+    }
+
+    private static Set<String> readCalls(ClassReader classReader) throws IOException {
+        final RecordingAnalyzer analyzer = new RecordingAnalyzer();
+        analyzer.readCalls(classReader);
+        return analyzer.calls;
+    }
+
+    private static Set<String> visitCalls(ClassReader classReader) {
+        final CodeVisitor codeVisitor = new CodeVisitor();
+        classReader.accept(codeVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return codeVisitor.calls;
+    }
+
+    @Test
+    public void testMethodRefs() throws IOException {
+        final ClassReader classReader = toClassReader(createClass());
+        final Set<String> calls = readCalls(classReader);
+        assertEquals(visitCalls(classReader), calls);
+        assertTrue(calls.contains("p/Base.foo()V"));
+        assertTrue(calls.contains("p/Itf.bar(I)Ljava/lang/String;"));
+        assertTrue(calls.contains("p/Itf.create()Lp/Itf;"));
+        assertTrue(calls.contains("p/Base.<init>()V"));
+        assertEquals(5, calls.size());
+        assertFalse(ConstantPool.readMethodRefs(classReader, new RecordingAnalyzer()));
+    }
+
+    @Test
+    public void testCalledAnnotations() throws IOException {
+        final ClassWriter classWriter = createClass();
+        addAnnotatedMethod(classWriter, "init", INITIALIZER);
+        addAnnotatedMethod(classWriter, "bind", DATA_BOUND_CONSTRUCTOR);
+        addAnnotatedMethod(classWriter, "old", "Ljava/lang/Deprecated;");
+        final ClassReader classReader = toClassReader(classWriter);
+        // the annotations are found by the visit of the methods with SKIP_CODE
+        assertTrue(ConstantPool.readMethodRefs(classReader, new RecordingAnalyzer()));
+        final Set<String> calls = readCalls(classReader);
+        assertEquals(visitCalls(classReader), calls);
+        assertTrue(calls.contains("p/Caller.init()V"));
+        assertTrue(calls.contains("p/Caller.bind()V"));
+        assertFalse(calls.contains("p/Caller.old()V"));
+
+        for (final String annotationDesc : new String[] { INITIALIZER,
+                DATA_BOUND_CONSTRUCTOR }) {
+            final ClassWriter oneAnnotation = createClass();
+            addAnnotatedMethod(oneAnnotation, "annotated", annotationDesc);
+            assertTrue(ConstantPool.readMethodRefs(toClassReader(oneAnnotation),
+                    new RecordingAnalyzer()));
+        }
+
+        final ClassWriter otherAnnotation = createClass();
+        addAnnotatedMethod(otherAnnotation, "old", "Ljava/lang/Deprecated;");
+        assertFalse(ConstantPool.readMethodRefs(toClassReader(otherAnnotation),
+                new RecordingAnalyzer()));
+    }
+
+    @Test
+    public void testAnnotationDescriptorInString() throws IOException {
+        // the descriptor is in the pool but no method has the annotation
+        final ClassWriter classWriter = createClass();
+        final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "name",
+                "()Ljava/lang/Object;", null, null);
+        method.visitCode();
+        method.visitLdcInsn(INITIALIZER);
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        final ClassReader classReader = toClassReader(classWriter);
+        assertTrue(ConstantPool.readMethodRefs(classReader, new RecordingAnalyzer()));
+        assertEquals(visitCalls(classReader), readCalls(classReader));
+    }
+
+    @Test
+    public void testMethodHandle() throws IOException {
+        final ClassWriter classWriter = createClass();
+        final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "handle",
+                "()Ljava/lang/Object;", null, null);
+        method.visitCode();
+        method.visitLdcInsn(new Handle(Opcodes.H_INVOKESTATIC, "p/Util", "helper", "()V"));
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        final ClassReader classReader = toClassReader(classWriter);
+        // a method handle, such as a method reference of java 8, is a call which was not
+        // found by the visit of the code
+        final Set<String> calls = readCalls(classReader);
+        assertTrue(calls.contains("p/Util.helper()V"));
+        assertFalse(visitCalls(classReader).contains("p/Util.helper()V"));
+        calls.remove("p/Util.helper()V");
+        assertEquals(visitCalls(classReader), calls);
+    }
+}
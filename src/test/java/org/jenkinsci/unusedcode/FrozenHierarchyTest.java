@@ -0,0 +1,130 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class FrozenHierarchyTest {
+    private static final String OBJECT = "java/lang/Object";
+    // name, super class and interfaces of the classes
+    private static final String[][] CLASSES = {
+            { "a/core/Base", OBJECT },
+            { "a/core/Itf", OBJECT },
+            { "a/core/SubItf", OBJECT, "a/core/Itf" },
+            { "a/core/Impl", "a/core/Base", "a/core/SubItf", "java/io/Serializable" },
+            { "a/core/Impl2", "a/core/Impl" },
+            { "a/core/sub/Deep", "a/core/Impl2", "a/core/Itf" },
+            // cycle, as in org/bouncycastle/asn1
+            { "a/core/Cycle1", "a/core/Cycle2" },
+            { "a/core/Cycle2", "a/core/Cycle1" },
+            { "a/core/CycleSub", "a/core/Cycle1" },
+            // super classes missing from the index
+            { "a/core/Orphan", "a/core/Missing" },
+            { "a/core/Outside", "b/lib/External" }, };
+    private static final String[] OTHER_CLASSES = { "a/core/Missing", "a/core/NeverSeen",
+            "b/lib/External", "c/Unknown", };
+
+    private static ClassReader getClassReader(String[] names) {
+        final ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, names[0], null, names[1],
+                Arrays.copyOfRange(names, 2, names.length));
+        classWriter.visitEnd();
+        return new ClassReader(classWriter.toByteArray());
+    }
+
+    private static Hierarchy createHierarchy(List<String> includedPackages,
+            List<String> excludedPackages) {
+        final Hierarchy hierarchy = new Hierarchy();
+        hierarchy.setPackageFilters(includedPackages, excludedPackages);
+        for (final String[] names : CLASSES) {
+            final ClassReader classReader = getClassReader(names);
+            hierarchy.registerPackage(classReader);
+            hierarchy.registerHierarchyOfClass(classReader);
+        }
+        return hierarchy;
+    }
+
+    private static Set<String> methods(String... classNames) {
+        final Set<String> methods = new HashSet<>();
+        for (final String className : classNames) {
+            methods.add(Indexer.getMethodKey(className, "m", "()V"));
+        }
+        return methods;
+    }
+
+    private static void assertSameAsNotFrozen(List<String> includedPackages,
+            List<String> excludedPackages) {
+        // the hierarchy which is not frozen resolves the calls as before FrozenHierarchy
+        final Hierarchy hierarchy = createHierarchy(includedPackages, excludedPackages);
+        final Hierarchy frozenHierarchy = createHierarchy(includedPackages, excludedPackages);
+        frozenHierarchy.freeze();
+        final List<String> classNames = new ArrayList<>();
+        for (final String[] names : CLASSES) {
+            classNames.add(names[0]);
+        }
+        classNames.addAll(Arrays.asList(OTHER_CLASSES));
+        for (final String className : classNames) {
+            assertEquals(className, hierarchy.getPolymorphicMethods(className, "m", "()V"),
+                    frozenHierarchy.getPolymorphicMethods(className, "m", "()V"));
+        }
+    }
+
+    @Test
+    public void testSameAsNotFrozen() {
+        final List<String> none = Collections.emptyList();
+        assertSameAsNotFrozen(none, none);
+        assertSameAsNotFrozen(Arrays.asList("a.core"), Arrays.asList("a.core.sub"));
+        assertSameAsNotFrozen(none, Arrays.asList("a.core"));
+    }
+
+    @Test
+    public void testInterfaces() {
+        final Hierarchy hierarchy = createHierarchy(Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        hierarchy.freeze();
+        // the implementations, their sub-classes and the super-classes of the implementations
+        assertEquals(methods("a/core/Itf", "a/core/SubItf", "a/core/Impl", "a/core/Impl2",
+                "a/core/sub/Deep", "a/core/Base"),
+                hierarchy.getPolymorphicMethods("a/core/Itf", "m", "()V"));
+        assertEquals(methods("a/core/Impl2", "a/core/Impl", "a/core/Base", "a/core/sub/Deep"),
+                hierarchy.getPolymorphicMethods("a/core/Impl2", "m", "()V"));
+    }
+
+    @Test
+    public void testCycles() {
+        final Hierarchy hierarchy = createHierarchy(Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        hierarchy.freeze();
+        assertEquals(methods("a/core/Cycle1", "a/core/Cycle2", "a/core/CycleSub"),
+                hierarchy.getPolymorphicMethods("a/core/Cycle1", "m", "()V"));
+        // the walk of the super-classes stops before the other class of the cycle
+        assertEquals(methods("a/core/CycleSub", "a/core/Cycle1"),
+                hierarchy.getPolymorphicMethods("a/core/CycleSub", "m", "()V"));
+    }
+
+    @Test
+    public void testMissingClasses() {
+        final Hierarchy hierarchy = createHierarchy(Collections.<String> emptyList(),
+                Collections.<String> emptyList());
+        hierarchy.freeze();
+        // a class of an indexed package, even if the class itself is not indexed
+        assertEquals(methods("a/core/Missing", "a/core/Orphan"),
+                hierarchy.getPolymorphicMethods("a/core/Missing", "m", "()V"));
+        assertEquals(methods("a/core/NeverSeen"),
+                hierarchy.getPolymorphicMethods("a/core/NeverSeen", "m", "()V"));
+        // a class out of the indexed packages, only its sub-classes
+        assertEquals(methods("a/core/Outside"),
+                hierarchy.getPolymorphicMethods("b/lib/External", "m", "()V"));
+        assertEquals(methods(), hierarchy.getPolymorphicMethods("c/Unknown", "m", "()V"));
+    }
+}
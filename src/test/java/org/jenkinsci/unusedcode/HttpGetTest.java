@@ -0,0 +1,104 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpGetTest {
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] CONTENT = "{\"plugins\":{}}".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile int requests;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests++;
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.sendResponseHeaders(status, CONTENT.length);
+                final OutputStream output = exchange.getResponseBody();
+                try {
+                    output.write(CONTENT);
+                } finally {
+                    output.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private URL getUrl() throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + "/update-center.json");
+    }
+
+    @Test
+    public void testCopyIfModified() throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), "update-center.json");
+        assertTrue(new HttpGet(getUrl()).copyIfModified(file));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+        assertTrue(new File(file.getPath() + ".validators").exists());
+
+        // the etag is sent and the server answers 304
+        assertFalse(new HttpGet(getUrl()).copyIfModified(file));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+        assertEquals(2, requests);
+
+        // without the file, the validators are not sent
+        assertTrue(file.delete());
+        assertTrue(new HttpGet(getUrl()).copyIfModified(file));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testCopyIfModifiedError() throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), "update-center.json");
+        status = 500;
+        try {
+            new HttpGet(getUrl()).copyIfModified(file);
+            fail("IOException expected");
+        } catch (final IOException e) {
+            // the temp file is deleted
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+            assertFalse(file.exists());
+        }
+    }
+}
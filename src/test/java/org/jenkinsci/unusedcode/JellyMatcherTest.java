@@ -0,0 +1,116 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class JellyMatcherTest {
+    private static final String[] METHODS = {
+            "hudson/model/Run.getUrl()Ljava/lang/String;",
+            "hudson/model/Run.getUrlName()Ljava/lang/String;",
+            "hudson/model/Run.getLog(I)Ljava/util/List;",
+            "hudson/model/Job.getLog()Ljava/lang/String;",
+            "hudson/model/Run.getDisplayName()Ljava/lang/String;",
+            "hudson/model/Run.isBuilding()Z",
+            "hudson/model/Run.getFullDisplayName()Ljava/lang/String;",
+            "hudson/model/Run.getTime()Ljava/util/Date;",
+            "hudson/model/Run.getTimestamp()J",
+            "hudson/model/Run.getNumber()I",
+            "hudson/model/Run.getAction(I)Lhudson/model/Action;",
+            "hudson/model/Run.getActions()Ljava/util/List;",
+            "hudson/Util.escape(Ljava/lang/String;)V",
+            "hudson/Util.escape2(Ljava/lang/String;)V",
+            "hudson/model/Run.<init>()V",
+            "hudson/model/Run.getCauses()Ljava/util/List;",
+            "hudson/Functions.ünïcode()V",
+            "hudson/model/Run$Inner.size()I",
+            "hudson/model/Run.access$000()V",
+            "hudson/model/Run.lambda$run$0()V",
+    };
+
+    private static final String JELLY = "<?jelly escape-by-default='true'?>\n"
+            + "<j:jelly xmlns:j=\"jelly:core\" xmlns:l=\"/lib/layout\">\n"
+            + "  <l:layout title=\"${it.fullDisplayName}\">\n"
+            + "    <a href=\"${rootURL}/${it.getUrl()}\">${it.displayName}</a>\n"
+            + "    <j:if test=\"${it.building}\">${%Building} ${it.getLog(10)}</j:if>\n"
+            + "    <j:forEach var=\"a\" items=\"${it.actions}\">${a.getUrlName()}</j:forEach>\n"
+            + "    <st:include page=\"causes\" it=\"${it.getCauses()}\"/>${h.escape(it.name)}\n"
+            + "    <span>${it.timestamp}_getNumber ${it.access$000()} ${h.ünïcode()}</span>\n"
+            + "  </l:layout>\n" + "</j:jelly>\n";
+
+    // the regex of each method before the index of the jelly words
+    private static boolean matchesRegex(String method, String content) {
+        final String methodName = method.substring(0, method.lastIndexOf('('));
+        final String regex = ".*\\b"
+                + methodName.substring(methodName.lastIndexOf(Indexer.SEPARATOR) + 1) + "\\b.*";
+        return Pattern.compile(regex, Pattern.DOTALL).matcher(content).matches();
+    }
+
+    private static AtomicBitSet match(String content) throws IOException {
+        final JellyMatcher jellyMatcher = new JellyMatcher(new JellyIndex(METHODS));
+        final AnalysisSummary summary = new AnalysisSummary();
+        jellyMatcher.collect(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                summary);
+        final AtomicBitSet unusedMethods = new AtomicBitSet(METHODS.length);
+        unusedMethods.setAll();
+        jellyMatcher.match(summary, unusedMethods);
+        return unusedMethods;
+    }
+
+    private static void assertSameAsRegex(String content) throws IOException {
+        final AtomicBitSet unusedMethods = match(content);
+        for (int methodId = 0; methodId < METHODS.length; methodId++) {
+            final String method = METHODS[methodId];
+            if (JellyIndex.getSimpleName(method).indexOf('$') < 0) {
+                assertEquals(method, matchesRegex(method, content),
+                        !unusedMethods.get(methodId));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsRegex() throws IOException {
+        assertSameAsRegex(JELLY);
+        assertSameAsRegex("");
+        assertSameAsRegex("getUrl");
+        assertSameAsRegex("getUrlNamegetLog <init> new Run<init>() x.<init>");
+        assertSameAsRegex("escape2escape ${escape_2} ${it.size()}ün ünïcodé ünïcode");
+    }
+
+    @Test
+    public void testPrefixOfOtherWords() throws IOException {
+        final AtomicBitSet unusedMethods = match("${it.getUrlName()} ${it.getTimestamp()}");
+        assertFalse(unusedMethods.get(1));
+        assertFalse(unusedMethods.get(8));
+        // getUrl and getTime are only prefixes of the words
+        assertTrue(unusedMethods.get(0));
+        assertTrue(unusedMethods.get(7));
+    }
+
+    @Test
+    public void testPropertyAccess() throws IOException {
+        // like the regex, the property names of EL expressions are not the getters
+        final AtomicBitSet unusedMethods = match("${it.displayName} ${it.number}");
+        assertTrue(unusedMethods.get(4));
+        assertTrue(unusedMethods.get(9));
+    }
+
+    @Test
+    public void testDollarInName() throws IOException {
+        final String content = "${it.access$000()}";
+        // '$' was an end anchor in the regex, which never matched these names
+        assertFalse(matchesRegex(METHODS[18], content));
+        // they are now searched literally, with word boundaries
+        final AtomicBitSet unusedMethods = match(content);
+        assertFalse(unusedMethods.get(18));
+        assertTrue(unusedMethods.get(19));
+        assertTrue(match("${it.access$0001()}").get(18));
+    }
+}
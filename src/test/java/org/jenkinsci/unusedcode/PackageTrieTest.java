@@ -0,0 +1,116 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackageTrieTest {
+    private static final String[] PARTS = { "a", "b", "ab", "/", "a/", "" };
+
+    private static String randomName(Random random) {
+        final StringBuilder name = new StringBuilder();
+        final int length = random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            name.append(PARTS[random.nextInt(PARTS.length)]);
+        }
+        return name.toString();
+    }
+
+    // the list of prefixes, as in Hierarchy before PackageTrie
+    private static boolean startsWithOneOf(List<String> prefixes, String name) {
+        for (final String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testMatchesPrefixOf() {
+        final Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            final PackageTrie packageTrie = new PackageTrie();
+            final List<String> prefixes = new ArrayList<>();
+            final int count = random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                final String prefix = randomName(random);
+                packageTrie.add(prefix);
+                prefixes.add(prefix);
+            }
+            assertEquals(new HashSet<>(prefixes).size(), packageTrie.size());
+            for (int j = 0; j < 50; j++) {
+                final String name = randomName(random);
+                assertEquals(prefixes + " " + name, startsWithOneOf(prefixes, name),
+                        packageTrie.matchesPrefixOf(name));
+            }
+        }
+    }
+
+    @Test
+    public void testAddAndRemoveLongerPrefixes() {
+        final Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            final PackageTrie packageTrie = new PackageTrie();
+            final List<String> prefixes = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                final String prefix = randomName(random);
+                // as Hierarchy.registerPackage before PackageTrie
+                if (!startsWithOneOf(prefixes, prefix)) {
+                    final Iterator<String> iterator = prefixes.iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next().startsWith(prefix)) {
+                            iterator.remove();
+                        }
+                    }
+                    prefixes.add(prefix);
+                }
+                if (!packageTrie.matchesPrefixOf(prefix)) {
+                    packageTrie.addAndRemoveLongerPrefixes(prefix);
+                }
+                final List<String> triePrefixes = packageTrie.getPrefixes();
+                Collections.sort(prefixes);
+                Collections.sort(triePrefixes);
+                assertEquals(prefixes, triePrefixes);
+                assertEquals(prefixes.size(), packageTrie.size());
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingFilters() {
+        final Hierarchy hierarchy = new Hierarchy();
+        hierarchy.setPackageFilters(Arrays.asList("hudson", "hudson.model.listeners"),
+                Arrays.asList("hudson.model", "hudson.mod"));
+        assertTrue(hierarchy.isClassInPackageFilters("hudson/Util"));
+        assertTrue(hierarchy.isClassInPackageFilters("hudson/util/Secret"));
+        assertFalse(hierarchy.isClassInPackageFilters("hudson/model/Run"));
+        // an exclusion wins over a longer inclusion
+        assertFalse(hierarchy.isClassInPackageFilters("hudson/model/listeners/RunListener"));
+        // the packages are matched with their separator
+        assertTrue(hierarchy.isClassInPackageFilters("hudson/modelx/Foo"));
+        assertFalse(hierarchy.isClassInPackageFilters("hudsonx/Foo"));
+        assertFalse(hierarchy.isClassInPackageFilters("jenkins/model/Jenkins"));
+
+        hierarchy.setPackageFilters(Arrays.asList("hudson.model"), Arrays.asList("hudson"));
+        assertFalse(hierarchy.isClassInPackageFilters("hudson/model/Run"));
+        assertFalse(hierarchy.isClassInPackageFilters("hudson/Util"));
+
+        // without inclusion, all the packages which are not excluded
+        hierarchy.setPackageFilters(Collections.<String> emptyList(),
+                Arrays.asList("jenkins"));
+        assertTrue(hierarchy.isClassInPackageFilters("hudson/model/Run"));
+        assertTrue(hierarchy.isClassInPackageFilters("jenkinsci/Foo"));
+        assertFalse(hierarchy.isClassInPackageFilters("jenkins/model/Jenkins"));
+    }
+}
@@ -0,0 +1,104 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class UpdateCenterParserTest {
+    private final List<JenkinsFile> cores = new ArrayList<>();
+    private final List<JenkinsFile> plugins = new ArrayList<>();
+
+    private void parse(Reader reader) throws IOException {
+        try {
+            new UpdateCenterParser(reader).parse(new UpdateCenterParser.Listener() {
+                @Override
+                public void core(JenkinsFile core) {
+                    cores.add(core);
+                }
+
+                @Override
+                public void plugin(JenkinsFile plugin) {
+                    plugins.add(plugin);
+                }
+            });
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        parse(new InputStreamReader(getClass().getResourceAsStream("update-center.json"),
+                StandardCharsets.UTF_8));
+        assertEquals(1, cores.size());
+        assertEquals("core", cores.get(0).getName());
+        assertEquals("1.642", cores.get(0).getVersion());
+        assertEquals("http://updates.jenkins-ci.org/download/war/1.642/jenkins.war",
+                cores.get(0).getUrl().toString());
+        assertEquals("https://wiki.jenkins-ci.org/", cores.get(0).getWiki());
+
+        assertEquals(2, plugins.size());
+        final JenkinsFile ant = plugins.get(0);
+        assertEquals("ant", ant.getName());
+        assertEquals("1.2", ant.getVersion());
+        // "\/" is unescaped, and the other values such as the dependencies are skipped
+        assertEquals("http://updates.jenkins-ci.org/download/plugins/ant/1.2/ant.hpi",
+                ant.getUrl().toString());
+        assertEquals("https://wiki.jenkins-ci.org/display/JENKINS/Ant+Plugin", ant.getWiki());
+        assertEquals("ant.hpi", ant.getFile().getName());
+        final JenkinsFile git = plugins.get(1);
+        assertEquals("git", git.getName());
+        assertEquals("2.4.1", git.getVersion());
+        assertNull(git.getWiki());
+    }
+
+    @Test
+    public void testChecksums() throws IOException {
+        parse(new StringReader("{\"plugins\":{"
+                + "\"a\":{\"name\":\"a\",\"version\":\"1\",\"url\":\"http://localhost/a.hpi\","
+                + "\"sha1\":\"s1=\",\"sha256\":\"s256=\"},"
+                + "\"b\":{\"name\":\"a\",\"version\":\"1\",\"url\":\"http://localhost/a.hpi\","
+                + "\"sha1\":\"s1=\",\"sha256\":\"other=\"},"
+                + "\"c\":{\"name\":\"a\",\"version\":\"2\",\"url\":\"http://localhost/a.hpi\","
+                + "\"sha1\":\"s1=\"},"
+                + "\"d\":{\"name\":\"a\",\"version\":\"1\",\"url\":\"http://localhost/a.hpi\"}"
+                + "}}"));
+        assertEquals(4, plugins.size());
+        // the sha-256 is compared first
+        assertFalse(plugins.get(0).hasSameContent(plugins.get(1)));
+        // then the sha-1, even if the versions are not the same
+        assertTrue(plugins.get(0).hasSameContent(plugins.get(2)));
+        // and without checksum, the versions
+        assertTrue(plugins.get(0).hasSameContent(plugins.get(3)));
+        assertFalse(plugins.get(2).hasSameContent(plugins.get(3)));
+    }
+
+    @Test
+    public void testEmptyPlugins() throws IOException {
+        parse(new StringReader("{\"plugins\":{},\"core\":{\"name\":\"core\",\"version\":\"2.0\","
+                + "\"url\":\"http://localhost/jenkins.war\"}}"));
+        assertEquals(1, cores.size());
+        assertEquals(0, plugins.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingUrl() throws IOException {
+        parse(new StringReader("{\"plugins\":{\"ant\":{\"name\":\"ant\",\"version\":\"1.2\"}}}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        parse(new StringReader("updateCenter.post({\"core\":{\"name\":\"co"));
+    }
+}
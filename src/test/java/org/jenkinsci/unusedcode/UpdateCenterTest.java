@@ -0,0 +1,69 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UpdateCenterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private URL writeUpdateCenter(String... plugins) throws IOException {
+        final StringBuilder json = new StringBuilder("{\"core\":{\"name\":\"core\","
+                + "\"version\":\"2.0\",\"url\":\"http://localhost/jenkins.war\"},\"plugins\":{");
+        for (int i = 0; i < plugins.length; i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(i).append("\":")
+                    .append(plugins[i]);
+        }
+        json.append("}}");
+        final File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toURI().toURL();
+    }
+
+    private static String plugin(String name, String version, String sha256) {
+        return "{\"name\":\"" + name + "\",\"version\":\"" + version
+                + "\",\"url\":\"http://localhost/" + name + ".hpi\""
+                + (sha256 != null ? ",\"sha256\":\"" + sha256 + '"' : "") + '}';
+    }
+
+    private static List<String> getVersionDirectories(UpdateCenter updateCenter) {
+        final List<String> versionDirectories = new ArrayList<>();
+        for (final JenkinsFile plugin : updateCenter.getPlugins()) {
+            versionDirectories.add(plugin.getName() + ' ' + plugin.getVersionDirectory());
+        }
+        return versionDirectories;
+    }
+
+    @Test
+    public void testSameContent() throws Exception {
+        final URL stable = writeUpdateCenter(plugin("ant", "1.2", "YW50MTI="),
+                plugin("git", "2.0", "Z2l0MjA+/w=="), plugin("maven", "3.0", null));
+        final URL experimental = writeUpdateCenter(plugin("ant", "1.2", "YW50MTI="),
+                plugin("git", "2.0", "b3RoZXI+/w=="), plugin("maven", "3.0", null),
+                plugin("maven", "3.1-beta", null));
+        final UpdateCenter updateCenter = new UpdateCenter(Arrays.asList(stable, experimental),
+                UpdateCenter.PluginVersions.ALL);
+        // the same ant once, and the two contents of git 2.0 in their own directories
+        assertEquals(Arrays.asList("ant 1.2", "git 2.0", "git 2.0-b3RoZXIw", "maven 3.0",
+                "maven 3.1-beta"), getVersionDirectories(updateCenter));
+        assertEquals("2.0-b3RoZXIw",
+                updateCenter.getPlugins().get(2).getFile().getParentFile().getName());
+
+        final UpdateCenter newest = new UpdateCenter(Arrays.asList(stable, experimental),
+                UpdateCenter.PluginVersions.NEWEST);
+        assertEquals(Arrays.asList("ant 1.2", "git 2.0", "maven 3.1-beta"),
+                getVersionDirectories(newest));
+    }
+}
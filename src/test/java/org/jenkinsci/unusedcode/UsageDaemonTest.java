@@ -0,0 +1,100 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class UsageDaemonTest {
+    // name of each class, then names and descriptors of its methods
+    private static final String[][] CLASSES = {
+            { "hudson/model/Run", "build", "()V", "build", "(I)V", "builder", "()V", "log",
+                    "(I)Ljava/util/List;" },
+            { "hudson/model/RunMap", "build", "()V" },
+            { "hudson/model/listeners/RunListener", "fire", "()V" },
+            { "hudson/util/Secret", "decrypt", "()V" }, };
+
+    private static byte[] createClass(String[] names) {
+        final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, names[0], null, "java/lang/Object",
+                null);
+        for (int i = 1; i < names.length; i += 2) {
+            final MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, names[i],
+                    names[i + 1], null, null);
+            method.visitCode();
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static Indexer createIndexer() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ZipOutputStream zipOutput = new ZipOutputStream(output);
+        for (final String[] names : CLASSES) {
+            zipOutput.putNextEntry(new ZipEntry(names[0] + ".class"));
+            zipOutput.write(createClass(names));
+        }
+        zipOutput.close();
+        final Indexer indexer = new Indexer();
+        indexer.indexJar(new ByteArrayInputStream(output.toByteArray()));
+        return indexer;
+    }
+
+    private static String findFirstMethod(Indexer indexer, String prefix) {
+        return indexer.getMethod(UsageDaemon.findFirstMethodId(indexer, prefix));
+    }
+
+    @Test
+    public void testToMethodPrefix() {
+        assertEquals("hudson/model/Run.build(",
+                UsageDaemon.toMethodPrefix("hudson.model.Run.build"));
+        // the descriptor is given with '/' or '.'
+        assertEquals("hudson/model/Run.log(I)Ljava/util/List;",
+                UsageDaemon.toMethodPrefix("hudson.model.Run.log(I)Ljava/util/List;"));
+        assertEquals("hudson/model/Run.log(I)Ljava/util/List;",
+                UsageDaemon.toMethodPrefix("hudson.model.Run.log(I)Ljava.util.List;"));
+        assertEquals("hudson/model/Run.log(I",
+                UsageDaemon.toMethodPrefix("hudson.model.Run.log(I"));
+        // a method of a class in the default package
+        assertEquals("Foo.bar(", UsageDaemon.toMethodPrefix("Foo.bar"));
+        assertEquals(".main(", UsageDaemon.toMethodPrefix("main"));
+    }
+
+    @Test
+    public void testFindFirstMethodId() throws IOException {
+        final Indexer indexer = createIndexer();
+        assertEquals(7, indexer.getMethodCount());
+        // the ids are in the order of the keys
+        for (int methodId = 0; methodId < indexer.getMethodCount(); methodId++) {
+            final String method = indexer.getMethod(methodId);
+            assertEquals(method, methodId, UsageDaemon.findFirstMethodId(indexer, method));
+        }
+        assertEquals("hudson/model/Run.build()V",
+                findFirstMethod(indexer, UsageDaemon.toMethodPrefix("hudson.model.Run.build")));
+        // builder is after build(I)V
+        assertEquals("hudson/model/Run.builder()V",
+                findFirstMethod(indexer, UsageDaemon.toMethodPrefix("hudson.model.Run.builder")));
+        assertEquals("hudson/model/Run.build()V",
+                findFirstMethod(indexer, "hudson/model/Run" + Indexer.SEPARATOR));
+        // the first method of a package, or of a sub-package
+        assertEquals("hudson/model/Run.build()V", findFirstMethod(indexer, "hudson/model/"));
+        assertEquals("hudson/model/listeners/RunListener.fire()V",
+                findFirstMethod(indexer, "hudson/model/listeners/"));
+        assertEquals(0, UsageDaemon.findFirstMethodId(indexer, ""));
+        assertEquals(0, UsageDaemon.findFirstMethodId(indexer, "a"));
+        assertEquals(indexer.getMethodCount(), UsageDaemon.findFirstMethodId(indexer, "z"));
+        assertEquals(indexer.getMethodCount(),
+                UsageDaemon.findFirstMethodId(indexer, "hudson/util/Secret.z"));
+    }
+}
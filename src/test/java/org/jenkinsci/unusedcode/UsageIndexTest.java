@@ -0,0 +1,61 @@
+package org.jenkinsci.unusedcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class UsageIndexTest {
+    private static BitSet bits(int... methodIds) {
+        final BitSet bitSet = new BitSet();
+        for (final int methodId : methodIds) {
+            bitSet.set(methodId);
+        }
+        return bitSet;
+    }
+
+    @Test
+    public void testIsUsed() {
+        final UsageIndex usageIndex = new UsageIndex(4, 2);
+        usageIndex.put(new UsageIndex.Usage("jenkins.war", "2.0", 0, bits(0)));
+        usageIndex.put(new UsageIndex.Usage("jenkins.war", "3.0", 1, bits(1)));
+        usageIndex.put(new UsageIndex.Usage("ant.hpi", "1.0", -1, bits(2)));
+        // a core uses a method only in its version, and a plugin in all versions
+        assertTrue(usageIndex.isUsed(0, 0));
+        assertFalse(usageIndex.isUsed(0, 1));
+        assertFalse(usageIndex.isUsed(1, 0));
+        assertTrue(usageIndex.isUsed(1, 1));
+        assertTrue(usageIndex.isUsed(2, 0));
+        assertTrue(usageIndex.isUsed(2, 1));
+        assertFalse(usageIndex.isUsed(3, 0));
+        assertEquals(1, usageIndex.getUsers(2).size());
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        final UsageIndex usageIndex = new UsageIndex(4, 1);
+        usageIndex.put(new UsageIndex.Usage("ant.hpi", "1.0", -1, bits(0, 1)));
+        usageIndex.put(new UsageIndex.Usage("ant.hpi", "1.1", -1, bits(1, 2)));
+        usageIndex.put(new UsageIndex.Usage("git.hpi", "1.0", -1, bits(1)));
+        // the usage of the same version of a file is replaced
+        usageIndex.put(new UsageIndex.Usage("git.hpi", "1.0", -1, bits(3)));
+        assertTrue(usageIndex.isUsed(1, 0));
+        assertTrue(usageIndex.isUsed(3, 0));
+        assertEquals(2, usageIndex.getUsers(1).size());
+
+        usageIndex.remove("ant.hpi", "1.0");
+        assertFalse(usageIndex.isUsed(0, 0));
+        assertTrue(usageIndex.isUsed(1, 0));
+        usageIndex.remove("ant.hpi", "1.1");
+        assertFalse(usageIndex.isUsed(1, 0));
+        assertFalse(usageIndex.isUsed(2, 0));
+        // a file which is not in the index
+        usageIndex.remove("ant.hpi", "1.1");
+        usageIndex.remove("git.hpi", "2.0");
+        assertTrue(usageIndex.isUsed(3, 0));
+        assertEquals(1, usageIndex.getUsages().size());
+    }
+}